@@ -0,0 +1,215 @@
+package com.example.transactiontracker;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+// Maps the columns of a bank CSV export onto Transaction fields. Columns are detected from
+// the header row by name; amounts come either from a signed amount column or from separate
+// debit and credit columns.
+public class CsvMapping {
+    private static final String[] DATE_HEADERS = {"date", "transaction date", "posted date", "posting date",
+            "value date", "תאריך", "תאריך עסקה", "תאריך ערך"};
+    private static final String[] AMOUNT_HEADERS = {"amount", "sum", "value", "סכום", "סכום חיוב"};
+    private static final String[] DEBIT_HEADERS = {"debit", "withdrawal", "withdrawals", "חובה"};
+    private static final String[] CREDIT_HEADERS = {"credit", "deposit", "deposits", "זכות"};
+    private static final String[] DESCRIPTION_HEADERS = {"description", "details", "memo", "payee", "name",
+            "narrative", "תיאור", "פרטים", "תיאור התנועה", "שם בית העסק"};
+    private static final String[] CATEGORY_HEADERS = {"category", "קטגוריה"};
+
+    private static final String[] DATE_PATTERNS = {"yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd", "dd/MM/yyyy",
+            "dd/MM/yy", "dd.MM.yyyy", "dd-MM-yyyy", "MM/dd/yyyy", "yyyyMMdd"};
+
+    private final int dateColumn;
+    private final int amountColumn;
+    private final int debitColumn;
+    private final int creditColumn;
+    private final int descriptionColumn;
+    private final int categoryColumn;
+    private final String defaultCategory;
+
+    private final SimpleDateFormat[] dateFormats;
+    // The one format used for every row, chosen by detectDateFormat or else by the first date
+    private SimpleDateFormat dateFormat;
+
+    private CsvMapping(int dateColumn, int amountColumn, int debitColumn, int creditColumn,
+                       int descriptionColumn, int categoryColumn, String defaultCategory) {
+        this.dateColumn = dateColumn;
+        this.amountColumn = amountColumn;
+        this.debitColumn = debitColumn;
+        this.creditColumn = creditColumn;
+        this.descriptionColumn = descriptionColumn;
+        this.categoryColumn = categoryColumn;
+        this.defaultCategory = defaultCategory;
+
+        dateFormats = new SimpleDateFormat[DATE_PATTERNS.length];
+        for (int i = 0; i < DATE_PATTERNS.length; i++) {
+            dateFormats[i] = new SimpleDateFormat(DATE_PATTERNS[i], Locale.US);
+            dateFormats[i].setLenient(false);
+        }
+    }
+
+    // Returns null if the header doesn't have a recognizable date and amount column
+    public static CsvMapping fromHeader(List<String> header, String defaultCategory) {
+        int date = find(header, DATE_HEADERS);
+        int amount = find(header, AMOUNT_HEADERS);
+        int debit = find(header, DEBIT_HEADERS);
+        int credit = find(header, CREDIT_HEADERS);
+        if (date < 0 || (amount < 0 && debit < 0 && credit < 0)) {
+            return null;
+        }
+        return new CsvMapping(date, amount, debit, credit, find(header, DESCRIPTION_HEADERS),
+                find(header, CATEGORY_HEADERS), defaultCategory);
+    }
+
+    private static int find(List<String> header, String[] names) {
+        for (int i = 0; i < header.size(); i++) {
+            String column = header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+            for (String name : names) {
+                if (column.equals(name)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Picks the date format that parses the most dates in the sample, preferring the earlier
+    // pattern on a tie, so every row of the file is read the same way. A file whose first rows
+    // are all ambiguous, e.g. 01/02/2024, is read day first.
+    public void detectDateFormat(List<List<String>> sample) {
+        int best = -1;
+        int bestCount = 0;
+        for (int i = 0; i < dateFormats.length; i++) {
+            int count = 0;
+            for (List<String> record : sample) {
+                if (parseDate(dateFormats[i], get(record, dateColumn)) != null) {
+                    count++;
+                }
+            }
+            if (count > bestCount) {
+                best = i;
+                bestCount = count;
+            }
+        }
+        if (best >= 0) {
+            dateFormat = dateFormats[best];
+        }
+    }
+
+    // Returns null if the record can't be mapped, e.g. a summary line or a malformed date
+    public Transaction toTransaction(List<String> record) {
+        Date date = parseDate(get(record, dateColumn));
+        if (date == null) {
+            return null;
+        }
+
+        Long amount;
+        if (amountColumn >= 0) {
+            amount = parseAmount(get(record, amountColumn));
+        } else {
+            Long debit = parseAmount(get(record, debitColumn));
+            Long credit = parseAmount(get(record, creditColumn));
+            if (debit == null && credit == null) {
+                return null;
+            }
+            amount = (credit != null ? Math.abs(credit) : 0) - (debit != null ? Math.abs(debit) : 0);
+        }
+        if (amount == null) {
+            return null;
+        }
+
+        String description = get(record, descriptionColumn);
+        String category = get(record, categoryColumn);
+        Transaction transaction = new Transaction(amount, description != null ? description.trim() : "",
+                category != null && !category.trim().isEmpty() ? category.trim() : defaultCategory);
+        transaction.setDate(date);
+        return transaction;
+    }
+
+    private static String get(List<String> record, int column) {
+        return column >= 0 && column < record.size() ? record.get(column) : null;
+    }
+
+    Date parseDate(String value) {
+        if (dateFormat != null) {
+            return parseDate(dateFormat, value);
+        }
+        // Nothing detected yet; the first date that parses fixes the format for the rest
+        for (SimpleDateFormat format : dateFormats) {
+            Date date = parseDate(format, value);
+            if (date != null) {
+                dateFormat = format;
+                return date;
+            }
+        }
+        return null;
+    }
+
+    private static Date parseDate(SimpleDateFormat format, String value) {
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        ParsePosition position = new ParsePosition(0);
+        Date date = format.parse(value, position);
+        return date != null && position.getIndex() == value.length() ? date : null;
+    }
+
+    // Returns the amount in minor units, or null if the value isn't a number. A comma is the
+    // decimal separator when it follows the last dot or has only one or two digits after it,
+    // as in "1.234,56" or "1,5"; otherwise commas group thousands. A single dot is always
+    // decimal. Amounts with more than two decimals are rejected rather than rounded.
+    static Long parseAmount(String value) {
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        if (value.isEmpty()) {
+            return null;
+        }
+
+        boolean negative = value.startsWith("(") && value.endsWith(")");
+        StringBuilder digits = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c >= '0' && c <= '9') || c == '.' || c == ',' || c == '-') {
+                digits.append(c);
+            }
+        }
+
+        String number = digits.toString();
+        if (number.endsWith("-")) {
+            number = "-" + number.substring(0, number.length() - 1); // Trailing minus, e.g. "12.50-"
+        }
+        if (number.startsWith("-")) {
+            negative = true;
+            number = number.substring(1);
+        }
+
+        int comma = number.lastIndexOf(',');
+        int dot = number.lastIndexOf('.');
+        int decimal;
+        if (comma >= 0 && dot >= 0) {
+            decimal = Math.max(comma, dot); // "1,234.56" or "1.234,56"
+        } else if (comma >= 0) {
+            decimal = number.indexOf(',') == comma && number.length() - comma <= 3 ? comma : -1;
+        } else {
+            decimal = number.indexOf('.') == dot ? dot : -1; // Several dots only group, "1.234.567"
+        }
+        String whole = (decimal >= 0 ? number.substring(0, decimal) : number).replace(",", "").replace(".", "");
+        String fraction = decimal >= 0 ? number.substring(decimal + 1) : "";
+        if (fraction.length() > 2) {
+            return null;
+        }
+
+        try {
+            long amount = Money.parse(fraction.isEmpty() ? whole : (whole.isEmpty() ? "0" : whole) + "." + fraction);
+            return negative ? -Math.abs(amount) : amount;
+        } catch (NumberFormatException | ArithmeticException e) {
+            return null;
+        }
+    }
+}
@@ -4,51 +4,200 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.CancellationSignal;
+import android.util.Log;
 
-import java.text.ParseException;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
+    public interface LedgerRowHandler {
+        // imagePaths is a '|' separated list, or null if the transaction has no images
+        void onRow(long id, long date, long amount, String description, String category,
+                   String imagePaths) throws IOException;
+    }
+
+    public interface MonthChangeListener {
+        // Called after a write commits. yearMonths holds the yyyyMM keys of every month whose
+        // rows or totals changed, or is null if any month may have.
+        void onMonthsChanged(Set<Integer> yearMonths);
+    }
+
+    private static final String TAG = "DatabaseHelper";
     private static final String DATABASE_NAME = "transactions.db";
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 12;
 
     private static final String TABLE_TRANSACTIONS = "transactions";
     private static final String TABLE_IMAGES = "transaction_images";
+    private static final String TABLE_MONTHLY_SUMMARY = "monthly_summary";
+    private static final String TABLE_CATEGORIES = "categories";
+    private static final String TABLE_SEARCH = "transactions_fts";
+    private static final String TABLE_MIGRATION_JOBS = "migration_jobs";
+    // Pre-version 8 tables, kept until the background copy into the current schema finishes
+    private static final String TABLE_LEGACY_TRANSACTIONS = "transactions_legacy";
+    private static final String TABLE_LEGACY_IMAGES = "transaction_images_legacy";
 
     private static final String COL_ID = "id";
     private static final String COL_AMOUNT = "amount";
     private static final String COL_DESCRIPTION = "description";
+    // Category text: the transactions column before version 8, and a search index column
     private static final String COL_CATEGORY = "category";
+    private static final String COL_CATEGORY_ID = "category_id";
     private static final String COL_DATE = "date";
 
     private static final String COL_IMAGE_ID = "image_id";
     private static final String COL_TRANSACTION_ID = "transaction_id";
     private static final String COL_IMAGE_PATH = "image_path";
 
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-    private SimpleDateFormat monthFormat = new SimpleDateFormat("MMM yyyy", Locale.getDefault());
+    private static final String COL_YEAR_MONTH = "year_month";
+    private static final String COL_INCOME = "income";
+    private static final String COL_EXPENSES = "expenses";
+    private static final String COL_TRANSACTION_COUNT = "transaction_count";
+    private static final String COL_CLOSING_BALANCE = "closing_balance";
+
+    private static final String COL_CATEGORY_NAME = "name";
+
+    private static final String COL_JOB_NAME = "name";
+    private static final String COL_FROM_VERSION = "from_version";
+    private static final String COL_LAST_ID = "last_id";
+    private static final String COL_MAX_ID = "max_id";
+    private static final String COL_ROWS_DONE = "rows_done";
+    private static final String COL_ROWS_TOTAL = "rows_total";
+
+    private static final String JOB_COPY_LEGACY = "copy_legacy_transactions";
+    private static final String JOB_INDEX_SEARCH = "index_search";
+    private static final String JOB_CLOSING_BALANCES = "closing_balances";
+
+    // Newest first, with id as a tie-breaker so keyset pages are stable. The date index
+    // already stores rows in (date, id) order since id is the rowid.
+    private static final String ORDER_NEWEST_FIRST = COL_DATE + " DESC, " + COL_ID + " DESC";
+
+    private static final String INDEX_TRANSACTIONS_DATE = "idx_transactions_date";
+    private static final String INDEX_TRANSACTIONS_REPORT = "idx_transactions_report";
+    private static final String INDEX_IMAGES_TRANSACTION_ID = "idx_images_transaction_id";
+    private static final String INDEX_IMAGES_PATH = "idx_images_path";
+    private static final String INDEX_TRANSACTIONS_CATEGORY = "idx_transactions_category";
+    private static final String INDEX_LEGACY_IMAGES_TRANSACTION_ID = "idx_legacy_images_transaction_id";
+
+    // Connection tuning, applied to the writer connection. Readers opened by the WAL connection
+    // pool keep SQLite's defaults, which suit their short queries.
+    private static final int CACHE_SIZE_KIB = 8 * 1024;
+    private static final long MMAP_SIZE_BYTES = 32L * 1024 * 1024;
+    // Checkpoint once the log reaches about 4 MB of 4 KB pages, and truncate it back to
+    // that size afterwards so a large import doesn't leave a large file behind
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
+    private static final long JOURNAL_SIZE_LIMIT_BYTES = 4L * 1024 * 1024;
+
+    // Operation names for QueryMetrics, also used as trace section names
+    private static final String OP_ALL_TRANSACTIONS = "db.getAllTransactions";
+    private static final String OP_TRANSACTIONS_IN_RANGE = "db.getTransactionsInRange";
+    private static final String OP_TRANSACTIONS_PAGE = "db.getTransactionsPage";
+    private static final String OP_TRANSACTIONS_THROUGH = "db.getTransactionsThrough";
+    private static final String OP_SEARCH = "db.searchTransactions";
+    private static final String OP_MONTH_SNAPSHOT = "db.getMonthSnapshot";
+    private static final String OP_MONTH_SUMMARY = "db.getMonthSummary";
+    private static final String OP_RANGE_SUMMARY = "db.getRangeSummary";
+    private static final String OP_REPORT = "db.getReport";
+    private static final String OP_HAS_DUPLICATE = "db.hasDuplicate";
+    private static final String OP_STREAM_LEDGER = "db.streamLedger";
+    private static final String OP_REFERENCED_IMAGE_PATHS = "db.getReferencedImagePaths";
+    private static final String OP_ADD_TRANSACTIONS = "db.addTransactions";
+    private static final String OP_UPDATE_TRANSACTION = "db.updateTransaction";
+    private static final String OP_DELETE_TRANSACTION = "db.deleteTransaction";
+
+    // Month labels as the screen shows them, e.g. "Dec 2025"
+    private static final String MONTH_PATTERN = "MMM yyyy";
+
+    private final CategoryDictionary categories = new CategoryDictionary();
+    private final QueryMetrics metrics = new QueryMetrics();
+    private volatile MonthChangeListener monthChangeListener;
+    // Null until first checked; true while the closing balance job hasn't finished, during which
+    // balances are summed from the transactions instead
+    private volatile Boolean closingBalancesPending;
+
+    // Applied in order by onUpgrade for every version above the database's old one.
+    // Versions 3 to 7 changed column formats and added the summary table; rows from those
+    // versions are converted by the job the version 8 step registers.
+    private final SchemaMigration[] migrations = {
+            // Version 1 predates receipt images
+            new SchemaMigration(2, (db, oldVersion) -> createImagesTable(db)),
+            new SchemaMigration(8, this::moveLegacyTablesAside),
+            new SchemaMigration(9, this::addSearchTable),
+            new SchemaMigration(11, this::addClosingBalances),
+            // Version 12 added the report index, which createIndexes adds after the steps
+    };
 
     public DatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
     }
 
+    public QueryMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMonthChangeListener(MonthChangeListener listener) {
+        monthChangeListener = listener;
+    }
+
+    private void notifyMonthsChanged(Set<Integer> yearMonths) {
+        MonthChangeListener listener = monthChangeListener;
+        if (listener != null) {
+            listener.onMonthsChanged(yearMonths);
+        }
+    }
+
+    // The yyyyMM key of the stored transaction's month, or null if there is no such row
+    private static Integer storedYearMonth(SQLiteDatabase db, long id) {
+        long date = queryLong(db, "SELECT " + COL_DATE + " FROM " + TABLE_TRANSACTIONS
+                + " WHERE " + COL_ID + " = ?", new String[]{String.valueOf(id)}, Long.MIN_VALUE);
+        return date == Long.MIN_VALUE ? null : MonthRange.containing(date).getYearMonth();
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
-        String createTransactionsTable = "CREATE TABLE " + TABLE_TRANSACTIONS + " ("
+        createCategoriesTable(db);
+        createTransactionsTable(db, TABLE_TRANSACTIONS);
+        createImagesTable(db);
+        createMonthlySummaryTable(db);
+        createIndexes(db);
+        createTriggers(db);
+        createSearchTable(db);
+        createMigrationJobsTable(db);
+    }
+
+    private void createTransactionsTable(SQLiteDatabase db, String tableName) {
+        // Dates are stored as epoch millis so month lookups are an index range scan.
+        // Amounts are stored as minor units (agorot) so sums are exact.
+        // Categories are stored once in the categories table and referenced by id.
+        String createTransactionsTable = "CREATE TABLE " + tableName + " ("
                 + COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
-                + COL_AMOUNT + " REAL, "
+                + COL_AMOUNT + " INTEGER, "
                 + COL_DESCRIPTION + " TEXT, "
-                + COL_CATEGORY + " TEXT, "
-                + COL_DATE + " TEXT)";
+                + COL_CATEGORY_ID + " INTEGER REFERENCES " + TABLE_CATEGORIES + "(" + COL_ID + "), "
+                + COL_DATE + " INTEGER)";
         db.execSQL(createTransactionsTable);
+    }
 
-        String createImagesTable = "CREATE TABLE " + TABLE_IMAGES + " ("
+    private void createCategoriesTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_CATEGORIES + " ("
+                + COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COL_CATEGORY_NAME + " TEXT NOT NULL UNIQUE)");
+    }
+
+    private void createImagesTable(SQLiteDatabase db) {
+        String createImagesTable = "CREATE TABLE IF NOT EXISTS " + TABLE_IMAGES + " ("
                 + COL_IMAGE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
                 + COL_TRANSACTION_ID + " INTEGER, "
                 + COL_IMAGE_PATH + " TEXT, "
@@ -57,220 +206,1293 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.execSQL(createImagesTable);
     }
 
+    // One row per local calendar month (yyyyMM), kept in sync with the transactions table
+    // by triggers so the month header is a primary key lookup. closing_balance is the sum of
+    // every transaction up to the end of the month, so the balance at any date is one lookup
+    // plus a sum over part of a single month.
+    private void createMonthlySummaryTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_MONTHLY_SUMMARY + " ("
+                + COL_YEAR_MONTH + " INTEGER PRIMARY KEY, "
+                + COL_INCOME + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_EXPENSES + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_TRANSACTION_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_CLOSING_BALANCE + " INTEGER NOT NULL DEFAULT 0)");
+    }
+
+    // Full-text index over description and category, one row per transaction with docid = id.
+    // It's kept in sync by the write methods below rather than by triggers, since the category
+    // text lives in another table. Automerge keeps the segment count low during large imports.
+    private void createSearchTable(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_SEARCH + " USING fts4("
+                + COL_DESCRIPTION + ", " + COL_CATEGORY + ", tokenize=unicode61)");
+        db.execSQL("INSERT INTO " + TABLE_SEARCH + " (" + TABLE_SEARCH + ") VALUES ('automerge=8')");
+    }
+
+    // Background migration jobs, one row per job. A job walks a table in id order up to max_id,
+    // and last_id records how far it got, so it resumes after the process is killed.
+    private void createMigrationJobsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_MIGRATION_JOBS + " ("
+                + COL_JOB_NAME + " TEXT PRIMARY KEY, "
+                + COL_FROM_VERSION + " INTEGER NOT NULL, "
+                + COL_LAST_ID + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_MAX_ID + " INTEGER NOT NULL, "
+                + COL_ROWS_DONE + " INTEGER NOT NULL DEFAULT 0, "
+                + COL_ROWS_TOTAL + " INTEGER NOT NULL)");
+    }
+
+    private void createIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_TRANSACTIONS_DATE + " ON "
+                + TABLE_TRANSACTIONS + "(" + COL_DATE + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_IMAGES_TRANSACTION_ID + " ON "
+                + TABLE_IMAGES + "(" + COL_TRANSACTION_ID + ")");
+        // Image files are shared between transactions and reference counted by path
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_IMAGES_PATH + " ON "
+                + TABLE_IMAGES + "(" + COL_IMAGE_PATH + ")");
+        // Backs the foreign key and makes a single category over a period an index seek
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_TRANSACTIONS_CATEGORY + " ON "
+                + TABLE_TRANSACTIONS + "(" + COL_CATEGORY_ID + ", " + COL_DATE + ")");
+        // Covers report queries, which then never read the table rows themselves
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_TRANSACTIONS_REPORT + " ON "
+                + TABLE_TRANSACTIONS + "(" + COL_DATE + ", " + COL_AMOUNT + ", " + COL_CATEGORY_ID + ")");
+    }
+
+    private void createTriggers(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_summary_insert AFTER INSERT ON "
+                + TABLE_TRANSACTIONS + " BEGIN "
+                + addToSummary("NEW")
+                + " END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_summary_delete AFTER DELETE ON "
+                + TABLE_TRANSACTIONS + " BEGIN "
+                + removeFromSummary("OLD")
+                + " END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_summary_update AFTER UPDATE OF "
+                + COL_AMOUNT + ", " + COL_DATE + " ON " + TABLE_TRANSACTIONS + " BEGIN "
+                + removeFromSummary("OLD")
+                + addToSummary("NEW")
+                + " END");
+    }
+
+    private static String yearMonthOf(String dateColumn) {
+        return "CAST(strftime('%Y%m', " + dateColumn + " / 1000, 'unixepoch', 'localtime') AS INTEGER)";
+    }
+
+    // A new month row starts from the closing balance of the month before it; the row's
+    // amount is then carried into its own and every later month's closing balance
+    private static String addToSummary(String row) {
+        String yearMonth = yearMonthOf(row + "." + COL_DATE);
+        String amount = row + "." + COL_AMOUNT;
+        return "INSERT OR IGNORE INTO " + TABLE_MONTHLY_SUMMARY + " (" + COL_YEAR_MONTH + ", "
+                + COL_CLOSING_BALANCE + ") VALUES (" + yearMonth + ", IFNULL(" + closingBalanceBefore(yearMonth) + ", 0)); "
+                + "UPDATE " + TABLE_MONTHLY_SUMMARY + " SET "
+                + COL_INCOME + " = " + COL_INCOME + " + CASE WHEN " + amount + " > 0 THEN " + amount + " ELSE 0 END, "
+                + COL_EXPENSES + " = " + COL_EXPENSES + " + CASE WHEN " + amount + " < 0 THEN " + amount + " ELSE 0 END, "
+                + COL_TRANSACTION_COUNT + " = " + COL_TRANSACTION_COUNT + " + 1"
+                + " WHERE " + COL_YEAR_MONTH + " = " + yearMonth + "; "
+                + "UPDATE " + TABLE_MONTHLY_SUMMARY + " SET "
+                + COL_CLOSING_BALANCE + " = " + COL_CLOSING_BALANCE + " + IFNULL(" + amount + ", 0)"
+                + " WHERE " + COL_YEAR_MONTH + " >= " + yearMonth + ";";
+    }
+
+    private static String removeFromSummary(String row) {
+        String yearMonth = yearMonthOf(row + "." + COL_DATE);
+        String amount = row + "." + COL_AMOUNT;
+        return "UPDATE " + TABLE_MONTHLY_SUMMARY + " SET "
+                + COL_INCOME + " = " + COL_INCOME + " - CASE WHEN " + amount + " > 0 THEN " + amount + " ELSE 0 END, "
+                + COL_EXPENSES + " = " + COL_EXPENSES + " - CASE WHEN " + amount + " < 0 THEN " + amount + " ELSE 0 END, "
+                + COL_TRANSACTION_COUNT + " = " + COL_TRANSACTION_COUNT + " - 1"
+                + " WHERE " + COL_YEAR_MONTH + " = " + yearMonth + "; "
+                + "UPDATE " + TABLE_MONTHLY_SUMMARY + " SET "
+                + COL_CLOSING_BALANCE + " = " + COL_CLOSING_BALANCE + " - IFNULL(" + amount + ", 0)"
+                + " WHERE " + COL_YEAR_MONTH + " >= " + yearMonth + "; "
+                + "DELETE FROM " + TABLE_MONTHLY_SUMMARY + " WHERE " + COL_YEAR_MONTH + " = " + yearMonth
+                + " AND " + COL_TRANSACTION_COUNT + " <= 0;";
+    }
+
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_IMAGES);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TRANSACTIONS);
-        onCreate(db);
+        // Version 10 added the job table, which the steps below may register jobs in
+        createMigrationJobsTable(db);
+
+        for (SchemaMigration migration : migrations) {
+            if (migration.getVersion() > oldVersion && migration.getVersion() <= newVersion) {
+                migration.apply(db, oldVersion);
+            }
+        }
+
+        // Anything older versions lacked or a step dropped
+        createCategoriesTable(db);
+        createMonthlySummaryTable(db);
+        createIndexes(db);
+        createTriggers(db);
+    }
+
+    // Before version 8, dates (until 3) and amounts (until 7) had other formats and categories
+    // were text on every row. Rather than rewriting every row here, the old tables are renamed
+    // and a background job copies them into the new schema in chunks. The app works on the new
+    // tables meanwhile, and the summary triggers count copied rows as they arrive.
+    private void moveLegacyTablesAside(SQLiteDatabase db, int oldVersion) {
+        // These would follow the renamed tables and block creating the new ones
+        db.execSQL("DROP TRIGGER IF EXISTS trg_summary_insert");
+        db.execSQL("DROP TRIGGER IF EXISTS trg_summary_delete");
+        db.execSQL("DROP TRIGGER IF EXISTS trg_summary_update");
+        db.execSQL("DROP INDEX IF EXISTS " + INDEX_TRANSACTIONS_DATE);
+        db.execSQL("DROP INDEX IF EXISTS " + INDEX_IMAGES_TRANSACTION_ID);
+        db.execSQL("DROP INDEX IF EXISTS " + INDEX_IMAGES_PATH);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_MONTHLY_SUMMARY);
+
+        db.execSQL("ALTER TABLE " + TABLE_IMAGES + " RENAME TO " + TABLE_LEGACY_IMAGES);
+        db.execSQL("ALTER TABLE " + TABLE_TRANSACTIONS + " RENAME TO " + TABLE_LEGACY_TRANSACTIONS);
+        db.execSQL("CREATE INDEX " + INDEX_LEGACY_IMAGES_TRANSACTION_ID + " ON "
+                + TABLE_LEGACY_IMAGES + "(" + COL_TRANSACTION_ID + ")");
+
+        createCategoriesTable(db);
+        createTransactionsTable(db, TABLE_TRANSACTIONS);
+        createImagesTable(db);
+
+        // New rows must not take ids that are still waiting to be copied
+        long maxId = queryLong(db, "SELECT IFNULL(MAX(" + COL_ID + "), 0) FROM " + TABLE_LEGACY_TRANSACTIONS, null, 0);
+        long sequence = queryLong(db, "SELECT IFNULL(MAX(seq), 0) FROM sqlite_sequence WHERE name = ?",
+                new String[]{TABLE_LEGACY_TRANSACTIONS}, 0);
+        db.execSQL("INSERT INTO sqlite_sequence (name, seq) VALUES (?, ?)",
+                new Object[]{TABLE_TRANSACTIONS, Math.max(maxId, sequence)});
+
+        long rowCount = queryLong(db, "SELECT COUNT(*) FROM " + TABLE_LEGACY_TRANSACTIONS, null, 0);
+        registerMigrationJob(db, JOB_COPY_LEGACY, oldVersion, maxId, rowCount);
+    }
+
+    private void addSearchTable(SQLiteDatabase db, int oldVersion) {
+        createSearchTable(db);
+        // Older databases get their index filled by the legacy copy job instead
+        if (oldVersion >= 8) {
+            long maxId = queryLong(db, "SELECT IFNULL(MAX(" + COL_ID + "), 0) FROM " + TABLE_TRANSACTIONS, null, 0);
+            long rowCount = queryLong(db, "SELECT COUNT(*) FROM " + TABLE_TRANSACTIONS, null, 0);
+            registerMigrationJob(db, JOB_INDEX_SEARCH, oldVersion, maxId, rowCount);
+        }
+    }
+
+    // Version 11 added closing balances. The summary triggers are dropped so onUpgrade
+    // recreates them with the new bodies, and existing months are filled in by a background job.
+    private void addClosingBalances(SQLiteDatabase db, int oldVersion) {
+        db.execSQL("DROP TRIGGER IF EXISTS trg_summary_insert");
+        db.execSQL("DROP TRIGGER IF EXISTS trg_summary_delete");
+        db.execSQL("DROP TRIGGER IF EXISTS trg_summary_update");
+        // Before version 8 the summary table was dropped and will be created with the column
+        if (oldVersion >= 8) {
+            db.execSQL("ALTER TABLE " + TABLE_MONTHLY_SUMMARY + " ADD COLUMN "
+                    + COL_CLOSING_BALANCE + " INTEGER NOT NULL DEFAULT 0");
+            // The job walks months rather than ids, and has no upper bound so months that
+            // writes add while it runs are covered too
+            long monthCount = queryLong(db, "SELECT COUNT(*) FROM " + TABLE_MONTHLY_SUMMARY, null, 0);
+            registerMigrationJob(db, JOB_CLOSING_BALANCES, oldVersion, Long.MAX_VALUE, monthCount);
+            closingBalancesPending = true;
+        }
+    }
+
+    private void registerMigrationJob(SQLiteDatabase db, String name, int fromVersion, long maxId, long rowCount) {
+        ContentValues values = new ContentValues();
+        values.put(COL_JOB_NAME, name);
+        values.put(COL_FROM_VERSION, fromVersion);
+        values.put(COL_MAX_ID, maxId);
+        values.put(COL_ROWS_TOTAL, rowCount);
+        db.insertWithOnConflict(TABLE_MIGRATION_JOBS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    // Runs one chunk of the oldest pending migration job in its own transaction, together with
+    // the job's progress update, so an interrupted migration resumes where it stopped and other
+    // threads get the database between chunks. Returns false once no jobs are left.
+    public boolean runMigrationChunk(int chunkSize) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        boolean copiedLegacyRows = false;
+        boolean filledClosingBalances = false;
+        boolean copiedAllLegacyRows = false;
+        db.beginTransaction();
+        try {
+            Cursor cursor = metrics.track(db.query(TABLE_MIGRATION_JOBS,
+                    new String[]{COL_JOB_NAME, COL_FROM_VERSION, COL_LAST_ID, COL_MAX_ID},
+                    null, null, null, null, "rowid", "1"));
+            if (!cursor.moveToFirst()) {
+                cursor.close();
+                return false;
+            }
+            String name = cursor.getString(0);
+            int fromVersion = cursor.getInt(1);
+            long afterId = cursor.getLong(2);
+            long maxId = cursor.getLong(3);
+            cursor.close();
+
+            // Ids can have gaps, so the end of the chunk is read rather than computed
+            String source = JOB_COPY_LEGACY.equals(name) ? TABLE_LEGACY_TRANSACTIONS : TABLE_TRANSACTIONS;
+            String key = COL_ID;
+            if (JOB_CLOSING_BALANCES.equals(name)) {
+                source = TABLE_MONTHLY_SUMMARY;
+                key = COL_YEAR_MONTH;
+            }
+            long chunkEnd = queryLong(db, "SELECT " + key + " FROM " + source
+                            + " WHERE " + key + " > ? AND " + key + " <= ? ORDER BY " + key
+                            + " LIMIT 1 OFFSET " + (chunkSize - 1),
+                    new String[]{String.valueOf(afterId), String.valueOf(maxId)}, maxId);
+
+            int rows = 0;
+            if (JOB_COPY_LEGACY.equals(name)) {
+                rows = copyLegacyChunk(db, fromVersion, afterId, chunkEnd);
+                copiedLegacyRows = true;
+            } else if (JOB_INDEX_SEARCH.equals(name)) {
+                rows = indexSearchChunk(db, afterId, chunkEnd);
+            } else if (JOB_CLOSING_BALANCES.equals(name)) {
+                rows = closingBalancesChunk(db, afterId, chunkEnd);
+            }
+
+            if (chunkEnd >= maxId) {
+                finishMigrationJob(db, name);
+                filledClosingBalances = JOB_CLOSING_BALANCES.equals(name);
+                copiedAllLegacyRows = JOB_COPY_LEGACY.equals(name);
+            } else {
+                db.execSQL("UPDATE " + TABLE_MIGRATION_JOBS + " SET " + COL_LAST_ID + " = ?, "
+                                + COL_ROWS_DONE + " = " + COL_ROWS_DONE + " + ? WHERE " + COL_JOB_NAME + " = ?",
+                        new Object[]{chunkEnd, rows, name});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            if (copiedLegacyRows) {
+                categories.clear(); // The chunk may have added categories
+            }
+        }
+        if (filledClosingBalances) {
+            // Only once committed, so no reader trusts balances it can't see yet
+            closingBalancesPending = false;
+        }
+        if (copiedAllLegacyRows) {
+            // The triggers built the summary row by row during the copy; check it once against
+            // the copied rows, which also rebuilds it and notifies every month if they disagree
+            verifyMonthlySummary();
+        }
+        if (copiedLegacyRows) {
+            notifyMonthsChanged(null);
+        }
+        return true;
+    }
+
+    // Copies legacy rows with ids in (afterId, lastId] into the current tables, converting each
+    // column from the format of the version they were written by
+    private int copyLegacyChunk(SQLiteDatabase db, int fromVersion, long afterId, long lastId) {
+        Object[] range = new Object[]{afterId, lastId};
+        String inRange = " WHERE " + COL_ID + " > ? AND " + COL_ID + " <= ?";
+
+        String date = COL_DATE;
+        if (fromVersion < 3) {
+            // Version 2 stored dates as local "yyyy-MM-dd HH:mm:ss" text.
+            // The 'utc' modifier treats the text as local time and converts it to UTC.
+            // Unparseable dates fall back to now, matching the old cursor parsing.
+            date = "COALESCE(CAST(strftime('%s', " + COL_DATE + ", 'utc') AS INTEGER), "
+                    + "CAST(strftime('%s', 'now') AS INTEGER)) * 1000";
+        }
+
+        String amount = COL_AMOUNT;
+        if (fromVersion < 7) {
+            // Amounts move from REAL shekels to INTEGER agorot
+            amount = "CAST(ROUND(" + COL_AMOUNT + " * 100) AS INTEGER)";
+        }
+
+        // Category text moves into the categories table and rows keep only its id
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_CATEGORIES + " (" + COL_CATEGORY_NAME + ") SELECT DISTINCT "
+                + COL_CATEGORY + " FROM " + TABLE_LEGACY_TRANSACTIONS + inRange
+                + " AND " + COL_CATEGORY + " IS NOT NULL", range);
+        String categoryId = "(SELECT c." + COL_ID + " FROM " + TABLE_CATEGORIES + " c WHERE c."
+                + COL_CATEGORY_NAME + " = l." + COL_CATEGORY + ")";
+
+        SQLiteStatement copyTransactions = db.compileStatement("INSERT INTO " + TABLE_TRANSACTIONS + " ("
+                + COL_ID + ", " + COL_AMOUNT + ", " + COL_DESCRIPTION + ", " + COL_CATEGORY_ID + ", " + COL_DATE
+                + ") SELECT " + COL_ID + ", " + amount + ", " + COL_DESCRIPTION + ", " + categoryId + ", " + date
+                + " FROM " + TABLE_LEGACY_TRANSACTIONS + " l" + inRange);
+        copyTransactions.bindLong(1, afterId);
+        copyTransactions.bindLong(2, lastId);
+        int rows = copyTransactions.executeUpdateDelete();
+        copyTransactions.close();
+
+        db.execSQL("INSERT INTO " + TABLE_SEARCH + " (docid, " + COL_DESCRIPTION + ", " + COL_CATEGORY
+                + ") SELECT " + COL_ID + ", " + COL_DESCRIPTION + ", " + COL_CATEGORY
+                + " FROM " + TABLE_LEGACY_TRANSACTIONS + inRange, range);
+
+        // Image ids aren't kept; new images may already have taken them
+        db.execSQL("INSERT INTO " + TABLE_IMAGES + " (" + COL_TRANSACTION_ID + ", " + COL_IMAGE_PATH
+                + ") SELECT " + COL_TRANSACTION_ID + ", " + COL_IMAGE_PATH + " FROM " + TABLE_LEGACY_IMAGES
+                + " WHERE " + COL_TRANSACTION_ID + " > ? AND " + COL_TRANSACTION_ID + " <= ?"
+                + " ORDER BY " + COL_IMAGE_ID, range);
+        return rows;
+    }
+
+    // Adds rows with ids in (afterId, lastId] to the search index. Rows added since the upgrade
+    // have higher ids and were indexed when they were inserted.
+    private int indexSearchChunk(SQLiteDatabase db, long afterId, long lastId) {
+        SQLiteStatement index = db.compileStatement("INSERT INTO " + TABLE_SEARCH + " (docid, "
+                + COL_DESCRIPTION + ", " + COL_CATEGORY + ") SELECT t." + COL_ID + ", t." + COL_DESCRIPTION
+                + ", c." + COL_CATEGORY_NAME + " FROM " + TABLE_TRANSACTIONS + " t LEFT JOIN "
+                + TABLE_CATEGORIES + " c ON c." + COL_ID + " = t." + COL_CATEGORY_ID
+                + " WHERE t." + COL_ID + " > ? AND t." + COL_ID + " <= ?");
+        index.bindLong(1, afterId);
+        index.bindLong(2, lastId);
+        int rows = index.executeUpdateDelete();
+        index.close();
+        return rows;
+    }
+
+    // Sets the closing balance of the months in (afterMonth, lastMonth] to the balance carried
+    // from the latest month before them plus their own nets. Months up to afterMonth are
+    // already right and kept right by the triggers; later ones are overwritten by later chunks.
+    private int closingBalancesChunk(SQLiteDatabase db, long afterMonth, long lastMonth) {
+        SQLiteStatement fill = db.compileStatement("UPDATE " + TABLE_MONTHLY_SUMMARY + " SET "
+                + COL_CLOSING_BALANCE + " = IFNULL(" + closingBalanceBefore("?1 + 1") + ", 0) + ("
+                + "SELECT SUM(s." + COL_INCOME + " + s." + COL_EXPENSES + ") FROM " + TABLE_MONTHLY_SUMMARY + " s"
+                + " WHERE s." + COL_YEAR_MONTH + " > ?1 AND s." + COL_YEAR_MONTH + " <= "
+                + TABLE_MONTHLY_SUMMARY + "." + COL_YEAR_MONTH + ")"
+                + " WHERE " + COL_YEAR_MONTH + " > ?1 AND " + COL_YEAR_MONTH + " <= ?2");
+        fill.bindLong(1, afterMonth);
+        fill.bindLong(2, lastMonth);
+        int rows = fill.executeUpdateDelete();
+        fill.close();
+        return rows;
+    }
+
+    // Whether balances must still be summed from the transactions, checked once per process
+    private boolean closingBalancesPending(SQLiteDatabase db) {
+        Boolean pending = closingBalancesPending;
+        if (pending == null) {
+            pending = queryLong(db, "SELECT COUNT(*) FROM " + TABLE_MIGRATION_JOBS + " WHERE " + COL_JOB_NAME + " = ?",
+                    new String[]{JOB_CLOSING_BALANCES}, 0) > 0;
+            closingBalancesPending = pending;
+        }
+        return pending;
+    }
+
+    private void finishMigrationJob(SQLiteDatabase db, String name) {
+        db.delete(TABLE_MIGRATION_JOBS, COL_JOB_NAME + " = ?", new String[]{name});
+        if (JOB_COPY_LEGACY.equals(name)) {
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_LEGACY_IMAGES);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_LEGACY_TRANSACTIONS);
+        }
+    }
+
+    public MigrationProgress getMigrationProgress() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        MigrationProgress progress = new MigrationProgress(0, 0);
+
+        Cursor cursor = metrics.track(db.rawQuery("SELECT IFNULL(SUM(" + COL_ROWS_DONE + "), 0), IFNULL(SUM("
+                + COL_ROWS_TOTAL + "), 0) FROM " + TABLE_MIGRATION_JOBS, null));
+        if (cursor.moveToFirst()) {
+            progress = new MigrationProgress(cursor.getLong(0), cursor.getLong(1));
+        }
+
+        cursor.close();
+        return progress;
+    }
+
+    // True while any job is unfinished, including one that failed and waits for the next launch
+    public boolean hasPendingMigrationJobs() {
+        return queryLong(this.getReadableDatabase(), "SELECT COUNT(*) FROM " + TABLE_MIGRATION_JOBS, null, 0) > 0;
+    }
+
+    private static boolean tableExists(SQLiteDatabase db, String name) {
+        return queryLong(db, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?",
+                new String[]{name}, 0) > 0;
+    }
+
+    private static long queryLong(SQLiteDatabase db, String sql, String[] args, long defaultValue) {
+        long value = defaultValue;
+        Cursor cursor = db.rawQuery(sql, args);
+        if (cursor.moveToFirst() && !cursor.isNull(0)) {
+            value = cursor.getLong(0);
+        }
+        cursor.close();
+        return value;
     }
 
     @Override
     public void onConfigure(SQLiteDatabase db) {
         super.onConfigure(db);
         db.setForeignKeyConstraintsEnabled(true);
+        // Readers get their own pooled connections and see the last commit while an import or
+        // migration chunk is writing, and commits append to the log instead of rewriting pages
+        db.enableWriteAheadLogging();
+
+        // Set after the calls above, which reconfigure the connection with the platform defaults.
+        // NORMAL only syncs at checkpoints; a crash can lose the last commits but never corrupts.
+        db.execSQL("PRAGMA synchronous = NORMAL");
+        db.execSQL("PRAGMA cache_size = -" + CACHE_SIZE_KIB);
+        // These return the new value, so they have to go through a query
+        runPragma(db, "mmap_size = " + MMAP_SIZE_BYTES);
+        runPragma(db, "wal_autocheckpoint = " + WAL_AUTOCHECKPOINT_PAGES);
+        runPragma(db, "journal_size_limit = " + JOURNAL_SIZE_LIMIT_BYTES);
+    }
+
+    private static void runPragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery("PRAGMA " + pragma, null);
+        cursor.moveToFirst();
+        cursor.close();
+    }
+
+    // Copies the whole write-ahead log into the database and truncates it. Called after bulk
+    // writes, whose log would otherwise only be checkpointed piecemeal while the UI is reading.
+    public void checkpoint() {
+        try {
+            runPragma(this.getWritableDatabase(), "wal_checkpoint(TRUNCATE)");
+        } catch (SQLiteException e) {
+            // Busy; the auto-checkpoint catches up on later commits
+            Log.w(TAG, "Skipped checkpoint", e);
+        }
+    }
+
+    // Loads the categories table into memory the first time it's needed, or again after
+    // the dictionary was cleared
+    private CategoryDictionary getCategoryDictionary(SQLiteDatabase db) {
+        synchronized (categories) {
+            if (!categories.isLoaded()) {
+                Cursor cursor = metrics.track(db.query(TABLE_CATEGORIES, new String[]{COL_ID, COL_CATEGORY_NAME},
+                        null, null, null, null, null));
+                while (cursor.moveToNext()) {
+                    categories.put(cursor.getInt(0), cursor.getString(1));
+                }
+                cursor.close();
+                categories.setLoaded();
+            }
+        }
+        return categories;
+    }
+
+    // Returns the id of the named category, inserting it if it's new. Must be called inside
+    // a write transaction; callers clear the dictionary if that transaction rolls back.
+    private Integer getOrCreateCategoryId(SQLiteDatabase db, String name) {
+        if (name == null) {
+            return null;
+        }
+        CategoryDictionary dictionary = getCategoryDictionary(db);
+        Integer id = dictionary.getId(name);
+        if (id != null) {
+            return id;
+        }
+
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_CATEGORIES + " (" + COL_CATEGORY_NAME + ") VALUES (?)",
+                new Object[]{name});
+        Cursor cursor = metrics.track(db.rawQuery("SELECT " + COL_ID + " FROM " + TABLE_CATEGORIES
+                + " WHERE " + COL_CATEGORY_NAME + " = ?", new String[]{name}));
+        if (cursor.moveToFirst()) {
+            id = cursor.getInt(0);
+            dictionary.put(id, name);
+        }
+        cursor.close();
+        return id;
     }
 
     public long addTransaction(Transaction transaction) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
+        addTransactions(Collections.singletonList(transaction));
+        return transaction.getId();
+    }
 
-        values.put(COL_AMOUNT, transaction.getAmount());
-        values.put(COL_DESCRIPTION, transaction.getDescription());
-        values.put(COL_CATEGORY, transaction.getCategory());
-        values.put(COL_DATE, dateFormat.format(transaction.getDate()));
+    // Inserts all transactions and their images atomically in one database transaction,
+    // reusing two compiled statements for every row. Assigns the new ids to the transactions.
+    public void addTransactions(List<Transaction> transactions) {
+        QueryMetrics.Operation operation = metrics.begin(OP_ADD_TRANSACTIONS);
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            SQLiteStatement insertTransaction = db.compileStatement("INSERT INTO " + TABLE_TRANSACTIONS + " ("
+                    + COL_AMOUNT + ", " + COL_DESCRIPTION + ", " + COL_CATEGORY_ID + ", " + COL_DATE
+                    + ") VALUES (?, ?, ?, ?)");
+            SQLiteStatement insertImage = db.compileStatement("INSERT INTO " + TABLE_IMAGES + " ("
+                    + COL_TRANSACTION_ID + ", " + COL_IMAGE_PATH + ") VALUES (?, ?)");
+            SQLiteStatement insertSearch = db.compileStatement("INSERT INTO " + TABLE_SEARCH + " (docid, "
+                    + COL_DESCRIPTION + ", " + COL_CATEGORY + ") VALUES (?, ?, ?)");
+
+            boolean successful = false;
+            db.beginTransaction();
+            try {
+                for (Transaction transaction : transactions) {
+                    insertTransaction.bindLong(1, transaction.getAmount());
+                    bindStringOrNull(insertTransaction, 2, transaction.getDescription());
+                    Integer categoryId = getOrCreateCategoryId(db, transaction.getCategory());
+                    if (categoryId == null) {
+                        insertTransaction.bindNull(3);
+                    } else {
+                        insertTransaction.bindLong(3, categoryId);
+                    }
+                    insertTransaction.bindLong(4, transaction.getDateMillis());
 
-        long transactionId = db.insert(TABLE_TRANSACTIONS, null, values);
+                    long transactionId = insertTransaction.executeInsert();
+                    transaction.setId(transactionId);
 
-        if (transaction.getImagePaths() != null && !transaction.getImagePaths().isEmpty()) {
-            for (String imagePath : transaction.getImagePaths()) {
-                ContentValues imageValues = new ContentValues();
-                imageValues.put(COL_TRANSACTION_ID, transactionId);
-                imageValues.put(COL_IMAGE_PATH, imagePath);
-                db.insert(TABLE_IMAGES, null, imageValues);
+                    insertSearch.bindLong(1, transactionId);
+                    bindStringOrNull(insertSearch, 2, transaction.getDescription());
+                    bindStringOrNull(insertSearch, 3, transaction.getCategory());
+                    insertSearch.executeInsert();
+
+                    for (String imagePath : transaction.getImagePaths()) {
+                        insertImage.bindLong(1, transactionId);
+                        insertImage.bindString(2, imagePath);
+                        insertImage.executeInsert();
+                    }
+                }
+                db.setTransactionSuccessful();
+                successful = true;
+            } finally {
+                db.endTransaction();
+                insertTransaction.close();
+                insertImage.close();
+                insertSearch.close();
+                if (!successful) {
+                    categories.clear();
+                }
             }
+        } finally {
+            metrics.end(operation, transactions.size());
         }
 
-        return transactionId;
+        Set<Integer> yearMonths = new HashSet<>();
+        for (Transaction transaction : transactions) {
+            yearMonths.add(MonthRange.containing(transaction.getDateMillis()).getYearMonth());
+        }
+        notifyMonthsChanged(yearMonths);
     }
 
-    public List<Transaction> getAllTransactions() {
-        List<Transaction> transactions = new ArrayList<>();
+    public long getMaxTransactionId() {
+        long maxId = 0;
         SQLiteDatabase db = this.getReadableDatabase();
 
-        Cursor cursor = db.query(TABLE_TRANSACTIONS, null, null, null, null, null, COL_DATE + " DESC");
+        Cursor cursor = metrics.track(db.rawQuery("SELECT MAX(" + COL_ID + ") FROM "
+                + TABLE_TRANSACTIONS, null));
 
         if (cursor.moveToFirst()) {
-            do {
-                Transaction transaction = createTransactionFromCursor(cursor);
-                transactions.add(transaction);
-            } while (cursor.moveToNext());
+            maxId = cursor.getLong(0);
         }
 
         cursor.close();
-        return transactions;
+        return maxId;
     }
 
-    public List<Transaction> getTransactionsByMonth(String month) {
+    // True if a row with the same date, amount and description exists among ids up to maxId.
+    // This is an equality seek on the date index; the SQL is constant so the connection's
+    // prepared statement cache reuses the compiled query across calls.
+    public boolean hasDuplicate(Transaction transaction, long maxId) {
+        QueryMetrics.Operation operation = metrics.begin(OP_HAS_DUPLICATE);
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+
+            Cursor cursor = metrics.track(db.rawQuery("SELECT 1 FROM " + TABLE_TRANSACTIONS
+                            + " WHERE " + COL_DATE + " = ? AND " + COL_AMOUNT + " = ? AND "
+                            + "IFNULL(" + COL_DESCRIPTION + ", '') = ? AND " + COL_ID + " <= ? LIMIT 1",
+                    new String[]{String.valueOf(transaction.getDateMillis()),
+                            String.valueOf(transaction.getAmount()),
+                            transaction.getDescription() != null ? transaction.getDescription() : "",
+                            String.valueOf(maxId)}));
+
+            boolean duplicate = cursor.moveToFirst();
+            cursor.close();
+            return duplicate;
+        } finally {
+            metrics.end(operation, 1);
+        }
+    }
+
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    public List<Transaction> getAllTransactions() {
+        return queryTransactions(OP_ALL_TRANSACTIONS, null, null, null);
+    }
+
+    public List<Transaction> getTransactionsInRange(long start, long end) {
+        return queryTransactions(OP_TRANSACTIONS_IN_RANGE, COL_DATE + " >= ? AND " + COL_DATE + " < ?",
+                new String[]{String.valueOf(start), String.valueOf(end)}, null);
+    }
+
+    // Keyset pagination over [start, end): returns up to limit transactions that sort after
+    // the given one (newest first), or the first page when after is null. Each page is an
+    // index seek, no matter how deep into the month it is.
+    public List<Transaction> getTransactionsPage(long start, long end, Transaction after, int limit) {
+        if (after == null) {
+            return queryTransactions(OP_TRANSACTIONS_PAGE, COL_DATE + " >= ? AND " + COL_DATE + " < ?",
+                    new String[]{String.valueOf(start), String.valueOf(end)}, String.valueOf(limit));
+        }
+
+        return queryTransactions(OP_TRANSACTIONS_PAGE, COL_DATE + " >= ? AND " + COL_DATE + " < ? AND ("
+                        + COL_DATE + ", " + COL_ID + ") < (?, ?)",
+                new String[]{String.valueOf(start), String.valueOf(end),
+                        String.valueOf(after.getDateMillis()), String.valueOf(after.getId())},
+                String.valueOf(limit));
+    }
+
+    // Up to limit transactions in [start, end) from the newest down to and including the
+    // position of the given one, which need not exist any more. Re-reads a list that was paged
+    // that far.
+    public List<Transaction> getTransactionsThrough(long start, long end, Transaction through, int limit) {
+        return queryTransactions(OP_TRANSACTIONS_THROUGH, COL_DATE + " >= ? AND " + COL_DATE + " < ? AND ("
+                        + COL_DATE + ", " + COL_ID + ") >= (?, ?)",
+                new String[]{String.valueOf(start), String.valueOf(end),
+                        String.valueOf(through.getDateMillis()), String.valueOf(through.getId())},
+                String.valueOf(limit));
+    }
+
+    // Newest transactions whose description or category has words starting with every word of
+    // the query, e.g. "sup foo" finds "Supermarket" in the "Food" category. Uses the full-text
+    // index, so the cost depends on the number of matches rather than the ledger size.
+    // Throws OperationCanceledException if the signal is cancelled while the query runs.
+    public List<Transaction> searchTransactions(String query, int limit, CancellationSignal cancellationSignal) {
+        String match = toPrefixMatch(query);
+        if (match == null) {
+            return new ArrayList<>();
+        }
+        return queryTransactions(OP_SEARCH, COL_ID + " IN (SELECT docid FROM " + TABLE_SEARCH + " WHERE "
+                        + TABLE_SEARCH + " MATCH ?)",
+                new String[]{match}, String.valueOf(limit), cancellationSignal);
+    }
+
+    // Turns free text into an FTS query of quoted prefix terms, dropping punctuation so user
+    // input can never be parsed as query syntax. Returns null if nothing searchable is left.
+    static String toPrefixMatch(String query) {
+        StringBuilder match = new StringBuilder();
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= query.length(); i++) {
+            char c = i < query.length() ? query.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                term.append(c);
+            } else if (term.length() > 0) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append('"').append(term).append("*\"");
+                term.setLength(0);
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    // Loads the matching transactions and all of their images with exactly two queries,
+    // regardless of how many rows match.
+    private List<Transaction> queryTransactions(String operationName, String selection, String[] selectionArgs,
+                                                String limit) {
+        return queryTransactions(operationName, selection, selectionArgs, limit, null);
+    }
+
+    private List<Transaction> queryTransactions(String operationName, String selection, String[] selectionArgs,
+                                                String limit, CancellationSignal cancellationSignal) {
         List<Transaction> transactions = new ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
+        QueryMetrics.Operation operation = metrics.begin(operationName);
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            CategoryDictionary dictionary = getCategoryDictionary(db);
 
-        Cursor cursor = db.query(TABLE_TRANSACTIONS, null, null, null, null, null, COL_DATE + " DESC");
+            // One read transaction, so both queries see the same snapshot of the database and a
+            // write landing between them can't pair rows with the wrong images
+            db.beginTransactionNonExclusive();
+            try {
+                Map<Long, List<String>> imagesByTransaction = getImagesForTransactions(db, selection, selectionArgs,
+                        limit, cancellationSignal);
 
-        if (cursor.moveToFirst()) {
-            do {
-                String dateString = cursor.getString(cursor.getColumnIndexOrThrow(COL_DATE));
-                try {
-                    Date date = dateFormat.parse(dateString);
-                    String transactionMonth = monthFormat.format(date);
+                Cursor cursor = metrics.track(db.query(false, TABLE_TRANSACTIONS, null, selection, selectionArgs,
+                        null, null, ORDER_NEWEST_FIRST, limit, cancellationSignal));
 
-                    if (transactionMonth.equals(month)) {
-                        Transaction transaction = createTransactionFromCursor(cursor);
+                if (cursor.moveToFirst()) {
+                    do {
+                        Transaction transaction = createTransactionFromCursor(cursor, dictionary,
+                                imagesByTransaction);
                         transactions.add(transaction);
-                    }
-                } catch (ParseException e) {
-                    e.printStackTrace();
+                    } while (cursor.moveToNext());
                 }
-            } while (cursor.moveToNext());
+
+                cursor.close();
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return transactions;
+        } finally {
+            metrics.end(operation, transactions.size());
         }
+    }
 
-        cursor.close();
-        return transactions;
+    // Loads a calendar month into parallel primitive arrays in one pass over the date index.
+    // The arrays are sized from the summary table's row count, so they're allocated once.
+    // Category ids are the database ids and index into the snapshot's copy of the dictionary.
+    public MonthSnapshot getMonthSnapshot(MonthRange range) {
+        int size = 0;
+        QueryMetrics.Operation operation = metrics.begin(OP_MONTH_SNAPSHOT);
+        try {
+            int capacity = Math.max(getMonthSummary(range).getCount(), 16);
+            long[] ids = new long[capacity];
+            long[] dates = new long[capacity];
+            long[] amounts = new long[capacity];
+            int[] categoryIds = new int[capacity];
+            String[] descriptions = new String[capacity];
+
+            SQLiteDatabase db = this.getReadableDatabase();
+            Cursor cursor = metrics.track(db.query(TABLE_TRANSACTIONS,
+                    new String[]{COL_ID, COL_DATE, COL_AMOUNT, COL_DESCRIPTION, COL_CATEGORY_ID},
+                    COL_DATE + " >= ? AND " + COL_DATE + " < ?",
+                    new String[]{String.valueOf(range.getStart()), String.valueOf(range.getEnd())},
+                    null, null, ORDER_NEWEST_FIRST));
+
+            while (cursor.moveToNext()) {
+                if (size == ids.length) {
+                    int newCapacity = size * 2;
+                    ids = Arrays.copyOf(ids, newCapacity);
+                    dates = Arrays.copyOf(dates, newCapacity);
+                    amounts = Arrays.copyOf(amounts, newCapacity);
+                    categoryIds = Arrays.copyOf(categoryIds, newCapacity);
+                    descriptions = Arrays.copyOf(descriptions, newCapacity);
+                }
+                ids[size] = cursor.getLong(0);
+                dates[size] = cursor.getLong(1);
+                amounts[size] = cursor.getLong(2);
+                descriptions[size] = cursor.getString(3);
+                categoryIds[size] = cursor.getInt(4);
+                size++;
+            }
+            cursor.close();
+
+            // Copied after the rows are read so every id seen above is present
+            String[] categoryNames = getCategoryDictionary(db).getNames();
+            return new MonthSnapshot(range, size, ids, dates, amounts, categoryIds, descriptions,
+                    categoryNames, this::getImagePaths);
+        } finally {
+            metrics.end(operation, size);
+        }
+    }
+
+    public List<String> getImagePaths(long transactionId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        List<String> imagePaths = getImagesForTransactions(db, COL_ID + " = ?",
+                new String[]{String.valueOf(transactionId)}, null, null).get(transactionId);
+        return imagePaths != null ? imagePaths : Collections.emptyList();
+    }
+
+    // Walks the whole ledger oldest first in a single query, handing each row to the handler as
+    // it is read. Nothing is accumulated, so memory use is independent of ledger size.
+    public void streamLedger(LedgerRowHandler handler) throws IOException {
+        int rows = 0;
+        QueryMetrics.Operation operation = metrics.begin(OP_STREAM_LEDGER);
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            CategoryDictionary dictionary = getCategoryDictionary(db);
+
+            Cursor cursor = metrics.track(db.rawQuery("SELECT t." + COL_ID + ", t." + COL_DATE + ", t."
+                    + COL_AMOUNT + ", t." + COL_DESCRIPTION + ", t." + COL_CATEGORY_ID + ", "
+                    + "(SELECT group_concat(i." + COL_IMAGE_PATH + ", '|') FROM " + TABLE_IMAGES + " i"
+                    + " WHERE i." + COL_TRANSACTION_ID + " = t." + COL_ID + ")"
+                    + " FROM " + TABLE_TRANSACTIONS + " t ORDER BY t." + COL_DATE + ", t." + COL_ID, null));
+
+            try {
+                while (cursor.moveToNext()) {
+                    handler.onRow(cursor.getLong(0), cursor.getLong(1), cursor.getLong(2),
+                            cursor.getString(3), dictionary.getName(cursor.getInt(4)), cursor.getString(5));
+                    rows++;
+                }
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            metrics.end(operation, rows);
+        }
     }
 
-    private Transaction createTransactionFromCursor(Cursor cursor) {
+    // Returns the subset of the given image paths that at least one transaction still
+    // references, using the image path index. Legacy rows count until they have been copied.
+    public Set<String> getReferencedImagePaths(List<String> imagePaths) {
+        Set<String> referenced = new HashSet<>();
+        QueryMetrics.Operation operation = metrics.begin(OP_REFERENCED_IMAGE_PATHS);
+        try {
+            if (imagePaths.isEmpty()) {
+                return referenced;
+            }
+            SQLiteDatabase db = this.getReadableDatabase();
+
+            StringBuilder placeholders = new StringBuilder();
+            for (int i = 0; i < imagePaths.size(); i++) {
+                placeholders.append(i == 0 ? "?" : ", ?");
+            }
+
+            String[] args = imagePaths.toArray(new String[0]);
+            String sql = "SELECT " + COL_IMAGE_PATH + " FROM " + TABLE_IMAGES
+                    + " WHERE " + COL_IMAGE_PATH + " IN (" + placeholders + ")";
+            // Rows still waiting to be copied out of the pre-version 8 table reference images too
+            if (tableExists(db, TABLE_LEGACY_IMAGES)) {
+                sql += " UNION SELECT " + COL_IMAGE_PATH + " FROM " + TABLE_LEGACY_IMAGES
+                        + " WHERE " + COL_IMAGE_PATH + " IN (" + placeholders + ")";
+                String[] doubled = Arrays.copyOf(args, args.length * 2);
+                System.arraycopy(args, 0, doubled, args.length, args.length);
+                args = doubled;
+            }
+            Cursor cursor = metrics.track(db.rawQuery(sql, args));
+
+            while (cursor.moveToNext()) {
+                referenced.add(cursor.getString(0));
+            }
+
+            cursor.close();
+            return referenced;
+        } finally {
+            metrics.end(operation, referenced.size());
+        }
+    }
+
+    public List<Transaction> getTransactionsByMonth(String month) {
+        MonthRange range = parseMonth(month);
+        if (range == null) {
+            return new ArrayList<>();
+        }
+        return getTransactionsInRange(range.getStart(), range.getEnd());
+    }
+
+    // SimpleDateFormat isn't thread safe and this runs on several executors, so each call gets
+    // its own, in the current locale
+    private static MonthRange parseMonth(String month) {
+        MonthRange range = MonthRange.parse(month, new SimpleDateFormat(MONTH_PATTERN, Locale.getDefault()));
+        if (range == null) {
+            Log.w(TAG, "Unreadable month label: " + month);
+        }
+        return range;
+    }
+
+    private Transaction createTransactionFromCursor(Cursor cursor, CategoryDictionary dictionary,
+                                                    Map<Long, List<String>> imagesByTransaction) {
         Transaction transaction = new Transaction();
         transaction.setId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_ID)));
-        transaction.setAmount(cursor.getDouble(cursor.getColumnIndexOrThrow(COL_AMOUNT)));
+        transaction.setAmount(cursor.getLong(cursor.getColumnIndexOrThrow(COL_AMOUNT)));
         transaction.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(COL_DESCRIPTION)));
-        transaction.setCategory(cursor.getString(cursor.getColumnIndexOrThrow(COL_CATEGORY)));
+        // Null category ids read as 0, which the dictionary maps to null
+        transaction.setCategory(dictionary.getName(cursor.getInt(cursor.getColumnIndexOrThrow(COL_CATEGORY_ID))));
 
-        String dateString = cursor.getString(cursor.getColumnIndexOrThrow(COL_DATE));
-        try {
-            transaction.setDate(dateFormat.parse(dateString));
-        } catch (ParseException e) {
-            transaction.setDate(new Date());
-        }
+        transaction.setDateMillis(cursor.getLong(cursor.getColumnIndexOrThrow(COL_DATE)));
 
-        List<String> imagePaths = getImagesForTransaction(transaction.getId());
-        transaction.setImagePaths(imagePaths);
+        List<String> imagePaths = imagesByTransaction.get(transaction.getId());
+        if (imagePaths != null) {
+            transaction.setImagePaths(imagePaths);
+        }
 
         return transaction;
     }
 
-    private List<String> getImagesForTransaction(long transactionId) {
-        List<String> imagePaths = new ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
+    // Fetches the image paths of every transaction matching the selection in a single query,
+    // grouped by transaction id.
+    private Map<Long, List<String>> getImagesForTransactions(SQLiteDatabase db, String selection,
+                                                             String[] selectionArgs, String limit,
+                                                             CancellationSignal cancellationSignal) {
+        Map<Long, List<String>> imagesByTransaction = new HashMap<>();
+
+        String sql = "SELECT " + COL_TRANSACTION_ID + ", " + COL_IMAGE_PATH + " FROM " + TABLE_IMAGES;
+        if (selection != null) {
+            sql += " WHERE " + COL_TRANSACTION_ID + " IN (SELECT " + COL_ID + " FROM "
+                    + TABLE_TRANSACTIONS + " WHERE " + selection;
+            if (limit != null) {
+                sql += " ORDER BY " + ORDER_NEWEST_FIRST + " LIMIT " + limit;
+            }
+            sql += ")";
+        }
 
-        Cursor cursor = db.query(TABLE_IMAGES,
-                new String[]{COL_IMAGE_PATH},
-                COL_TRANSACTION_ID + " = ?",
-                new String[]{String.valueOf(transactionId)},
-                null, null, null);
+        Cursor cursor = metrics.track(db.rawQuery(sql, selectionArgs, cancellationSignal));
 
         if (cursor.moveToFirst()) {
             do {
-                imagePaths.add(cursor.getString(cursor.getColumnIndexOrThrow(COL_IMAGE_PATH)));
+                long transactionId = cursor.getLong(0);
+                List<String> imagePaths = imagesByTransaction.get(transactionId);
+                if (imagePaths == null) {
+                    imagePaths = new ArrayList<>();
+                    imagesByTransaction.put(transactionId, imagePaths);
+                }
+                imagePaths.add(cursor.getString(1));
             } while (cursor.moveToNext());
         }
 
         cursor.close();
-        return imagePaths;
+        return imagesByTransaction;
     }
 
     public void deleteTransaction(long id) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_TRANSACTIONS, COL_ID + " = ?", new String[]{String.valueOf(id)});
+        Integer yearMonth;
+        QueryMetrics.Operation operation = metrics.begin(OP_DELETE_TRANSACTION);
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            String[] args = new String[]{String.valueOf(id)};
+            db.beginTransaction();
+            try {
+                yearMonth = storedYearMonth(db, id);
+                db.delete(TABLE_TRANSACTIONS, COL_ID + " = ?", args);
+                db.delete(TABLE_SEARCH, "docid = ?", args);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            metrics.end(operation, 1);
+        }
+
+        if (yearMonth != null) {
+            notifyMonthsChanged(Collections.singleton(yearMonth));
+        }
+    }
+
+    // The latest month's closing balance
+    public long getTotalBalance() {
+        long balance = 0;
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        String sql = "SELECT " + COL_CLOSING_BALANCE + " FROM " + TABLE_MONTHLY_SUMMARY
+                + " ORDER BY " + COL_YEAR_MONTH + " DESC LIMIT 1";
+        if (closingBalancesPending(db)) {
+            sql = "SELECT IFNULL(SUM(" + COL_AMOUNT + "), 0) FROM " + TABLE_TRANSACTIONS;
+        }
+        Cursor cursor = metrics.track(db.rawQuery(sql, null));
+
+        if (cursor.moveToFirst()) {
+            balance = cursor.getLong(0);
+        }
+
+        cursor.close();
+        return balance;
     }
 
-    public double getTotalBalance() {
-        double balance = 0;
+    // The balance of every transaction dated up to and including the given time
+    public long getBalanceAt(long date) {
+        return getBalanceThrough(date, Long.MAX_VALUE);
+    }
+
+    // The running balance just after the given transaction in list order (date, then id)
+    public long getBalanceThrough(Transaction transaction) {
+        return getBalanceThrough(transaction.getDateMillis(), transaction.getId());
+    }
+
+    // The previous month's closing balance plus the month's rows up to (date, id). The in-month
+    // sum is bounded on both sides so it stays a range scan of the date index.
+    private long getBalanceThrough(long date, long id) {
+        long balance = 0;
         SQLiteDatabase db = this.getReadableDatabase();
+        MonthRange month = MonthRange.containing(date);
 
-        Cursor cursor = db.rawQuery("SELECT SUM(" + COL_AMOUNT + ") FROM " + TABLE_TRANSACTIONS, null);
+        if (closingBalancesPending(db)) {
+            // Every earlier row, until the job has filled in the closing balances
+            return queryLong(db, "SELECT IFNULL(SUM(" + COL_AMOUNT + "), 0) FROM " + TABLE_TRANSACTIONS
+                            + " WHERE " + COL_DATE + " <= ? AND (" + COL_DATE + " < ? OR " + COL_ID + " <= ?)",
+                    new String[]{String.valueOf(date), String.valueOf(date), String.valueOf(id)}, 0);
+        }
+        Cursor cursor = metrics.track(db.rawQuery("SELECT IFNULL(" + closingBalanceBefore("?") + ", 0) + IFNULL(("
+                        + "SELECT SUM(" + COL_AMOUNT + ") FROM " + TABLE_TRANSACTIONS
+                        + " WHERE " + COL_DATE + " >= ? AND " + COL_DATE + " <= ?"
+                        + " AND (" + COL_DATE + " < ? OR " + COL_ID + " <= ?)), 0)",
+                new String[]{String.valueOf(month.getYearMonth()), String.valueOf(month.getStart()),
+                        String.valueOf(date), String.valueOf(date), String.valueOf(id)}));
 
         if (cursor.moveToFirst()) {
-            balance = cursor.getDouble(0);
+            balance = cursor.getLong(0);
         }
 
         cursor.close();
         return balance;
     }
 
-    public double getTotalIncome() {
-        double income = 0;
+    // Subquery for the closing balance of the latest month before yearMonth, or NULL if none
+    private static String closingBalanceBefore(String yearMonth) {
+        return "(SELECT " + COL_CLOSING_BALANCE + " FROM " + TABLE_MONTHLY_SUMMARY
+                + " WHERE " + COL_YEAR_MONTH + " < " + yearMonth
+                + " ORDER BY " + COL_YEAR_MONTH + " DESC LIMIT 1)";
+    }
+
+    public long getTotalIncome() {
+        long income = 0;
         SQLiteDatabase db = this.getReadableDatabase();
 
-        Cursor cursor = db.rawQuery("SELECT SUM(" + COL_AMOUNT + ") FROM " + TABLE_TRANSACTIONS + " WHERE " + COL_AMOUNT + " > 0", null);
+        Cursor cursor = metrics.track(db.rawQuery("SELECT SUM(" + COL_AMOUNT + ") FROM " + TABLE_TRANSACTIONS + " WHERE " + COL_AMOUNT + " > 0", null));
 
         if (cursor.moveToFirst()) {
-            income = cursor.getDouble(0);
+            income = cursor.getLong(0);
         }
 
         cursor.close();
         return income;
     }
 
-    public double getTotalExpenses() {
-        double expenses = 0;
+    public long getTotalExpenses() {
+        long expenses = 0;
         SQLiteDatabase db = this.getReadableDatabase();
 
-        Cursor cursor = db.rawQuery("SELECT SUM(" + COL_AMOUNT + ") FROM " + TABLE_TRANSACTIONS + " WHERE " + COL_AMOUNT + " < 0", null);
+        Cursor cursor = metrics.track(db.rawQuery("SELECT SUM(" + COL_AMOUNT + ") FROM " + TABLE_TRANSACTIONS + " WHERE " + COL_AMOUNT + " < 0", null));
 
         if (cursor.moveToFirst()) {
-            expenses = cursor.getDouble(0);
+            expenses = cursor.getLong(0);
         }
 
         cursor.close();
         return expenses;
     }
 
-    public double getBalanceForMonth(String month) {
-        List<Transaction> transactions = getTransactionsByMonth(month);
-        double balance = 0;
+    // Computes income, expenses and row count for [start, end) in a single aggregate query
+    // over the date index, without building any Transaction objects.
+    public MonthSummary getMonthSummary(long start, long end) {
+        MonthSummary summary = new MonthSummary(0, 0, 0);
+        QueryMetrics.Operation operation = metrics.begin(OP_RANGE_SUMMARY);
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+
+            Cursor cursor = metrics.track(db.rawQuery("SELECT "
+                            + "SUM(CASE WHEN " + COL_AMOUNT + " > 0 THEN " + COL_AMOUNT + " ELSE 0 END), "
+                            + "SUM(CASE WHEN " + COL_AMOUNT + " < 0 THEN " + COL_AMOUNT + " ELSE 0 END), "
+                            + "COUNT(*) FROM " + TABLE_TRANSACTIONS
+                            + " WHERE " + COL_DATE + " >= ? AND " + COL_DATE + " < ?",
+                    new String[]{String.valueOf(start), String.valueOf(end)}));
+
+            if (cursor.moveToFirst()) {
+                summary = new MonthSummary(cursor.getLong(0), cursor.getLong(1), cursor.getInt(2));
+            }
 
-        for (Transaction t : transactions) {
-            balance += t.getAmount();
+            cursor.close();
+            return summary;
+        } finally {
+            metrics.end(operation, 1);
         }
+    }
 
-        return balance;
+    // O(1) lookup of a calendar month's totals from the incrementally maintained summary table
+    public MonthSummary getMonthSummary(MonthRange month) {
+        MonthSummary summary = new MonthSummary(0, 0, 0);
+        QueryMetrics.Operation operation = metrics.begin(OP_MONTH_SUMMARY);
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+
+            Cursor cursor = metrics.track(db.query(TABLE_MONTHLY_SUMMARY,
+                    new String[]{COL_INCOME, COL_EXPENSES, COL_TRANSACTION_COUNT},
+                    COL_YEAR_MONTH + " = ?",
+                    new String[]{String.valueOf(month.getYearMonth())},
+                    null, null, null));
+
+            if (cursor.moveToFirst()) {
+                summary = new MonthSummary(cursor.getLong(0), cursor.getLong(1), cursor.getInt(2));
+            }
+
+            cursor.close();
+            return summary;
+        } finally {
+            metrics.end(operation, 1);
+        }
     }
 
-    public double getIncomeForMonth(String month) {
-        List<Transaction> transactions = getTransactionsByMonth(month);
-        double income = 0;
+    // Income and expenses over [start, end) in buckets of the given size, optionally split by
+    // category. Bucket boundaries come from a recursive query in local time, so SQLite does one
+    // index range seek per bucket instead of converting every row's date. The first and last
+    // buckets are clipped to the range.
+    public Report getReport(long start, long end, ReportGranularity granularity, boolean byCategory) {
+        int rows = 0;
+        QueryMetrics.Operation operation = metrics.begin(OP_REPORT);
+        try {
+            if (start >= end) {
+                return new Report(granularity, new long[0], byCategory ? new int[0] : null,
+                        byCategory ? new String[0] : null, new long[0], new long[0], new int[0]);
+            }
+
+            // Buckets are generated by SQLite in local time, one row per bucket however long the
+            // range, with each bucket's start and the next one's in epoch millis
+            String[] modifiers = bucketModifiers(granularity);
+            String truncate = modifiers[0];
+            String step = modifiers[1];
+            String buckets = "WITH RECURSIVE buckets (local_start, bucket, next_bucket) AS ("
+                    + "SELECT s, " + epochMillisOf("s") + ", " + epochMillisOf("datetime(s, " + step + ")")
+                    + " FROM (SELECT datetime(" + start + " / 1000, 'unixepoch', 'localtime', " + truncate + ") AS s)"
+                    + " UNION ALL SELECT datetime(local_start, " + step + "), next_bucket, "
+                    + epochMillisOf("datetime(local_start, " + step + ", " + step + ")")
+                    + " FROM buckets WHERE next_bucket < " + end + ") ";
+
+            // Left joined so buckets without transactions still get a row of zeros
+            String groupBy = byCategory ? "1, 2" : "1";
+            SQLiteDatabase db = this.getReadableDatabase();
+            Cursor cursor = metrics.track(db.rawQuery(buckets
+                    + "SELECT b.bucket, " + (byCategory ? "t." + COL_CATEGORY_ID : "NULL") + ", "
+                    + "IFNULL(SUM(CASE WHEN t." + COL_AMOUNT + " > 0 THEN t." + COL_AMOUNT + " ELSE 0 END), 0), "
+                    + "IFNULL(SUM(CASE WHEN t." + COL_AMOUNT + " < 0 THEN t." + COL_AMOUNT + " ELSE 0 END), 0), "
+                    + "COUNT(t." + COL_ID + ") FROM buckets b LEFT JOIN " + TABLE_TRANSACTIONS + " t"
+                    + " ON t." + COL_DATE + " >= MAX(b.bucket, " + start + ")"
+                    + " AND t." + COL_DATE + " < MIN(b.next_bucket, " + end + ")"
+                    + " GROUP BY " + groupBy + " ORDER BY " + groupBy, null));
+
+            rows = cursor.getCount();
+            long[] starts = new long[rows];
+            int[] categoryIds = byCategory ? new int[rows] : null;
+            String[] categoryNames = byCategory ? new String[rows] : null;
+            long[] income = new long[rows];
+            long[] expenses = new long[rows];
+            int[] counts = new int[rows];
+            CategoryDictionary dictionary = byCategory ? getCategoryDictionary(db) : null;
 
-        for (Transaction t : transactions) {
-            if (t.getAmount() > 0) {
-                income += t.getAmount();
+            for (int i = 0; cursor.moveToNext(); i++) {
+                starts[i] = cursor.getLong(0);
+                if (byCategory) {
+                    categoryIds[i] = cursor.getInt(1);
+                    categoryNames[i] = dictionary.getName(categoryIds[i]);
+                }
+                income[i] = cursor.getLong(2);
+                expenses[i] = cursor.getLong(3);
+                counts[i] = cursor.getInt(4);
             }
+
+            cursor.close();
+            return new Report(granularity, starts, categoryIds, categoryNames, income, expenses, counts);
+        } finally {
+            metrics.end(operation, rows);
         }
+    }
 
-        return income;
+    // SQLite date modifiers that truncate a local time to its bucket and step to the next one,
+    // matching ReportGranularity.truncate and advance
+    private static String[] bucketModifiers(ReportGranularity granularity) {
+        switch (granularity) {
+            case DAY:
+                return new String[]{"'start of day'", "'+1 day'"};
+            case WEEK:
+                // On or after the date to Sunday, then back to that week's Monday
+                return new String[]{"'start of day', 'weekday 0', '-6 days'", "'+7 days'"};
+            case MONTH:
+                return new String[]{"'start of month'", "'+1 month'"};
+            case YEAR:
+            default:
+                return new String[]{"'start of year'", "'+1 year'"};
+        }
     }
 
-    public double getExpensesForMonth(String month) {
-        List<Transaction> transactions = getTransactionsByMonth(month);
-        double expenses = 0;
+    // A local "yyyy-MM-dd HH:mm:ss" time as epoch millis
+    private static String epochMillisOf(String localTime) {
+        return "CAST(strftime('%s', " + localTime + ", 'utc') AS INTEGER) * 1000";
+    }
 
-        for (Transaction t : transactions) {
-            if (t.getAmount() < 0) {
-                expenses += t.getAmount();
-            }
+    // Regenerates the monthly summary from the raw transaction rows
+    public void rebuildMonthlySummary() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            rebuildMonthlySummary(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
+        notifyMonthsChanged(null);
+    }
 
-        return expenses;
+    private void rebuildMonthlySummary(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TABLE_MONTHLY_SUMMARY);
+        db.execSQL("INSERT INTO " + TABLE_MONTHLY_SUMMARY + " ("
+                + COL_YEAR_MONTH + ", " + COL_INCOME + ", " + COL_EXPENSES + ", " + COL_TRANSACTION_COUNT + ", "
+                + COL_CLOSING_BALANCE + ") " + summaryFromTransactions());
+    }
+
+    // The summary table's contents computed from the raw rows, with columns ym, inc, exp, cnt
+    // and closing; closing balances are a running total over the months in order
+    private static String summaryFromTransactions() {
+        return "SELECT ym, inc, exp, cnt, SUM(net) OVER (ORDER BY ym) AS closing FROM ("
+                + "SELECT " + yearMonthOf(COL_DATE) + " AS ym, "
+                + "SUM(CASE WHEN " + COL_AMOUNT + " > 0 THEN " + COL_AMOUNT + " ELSE 0 END) AS inc, "
+                + "SUM(CASE WHEN " + COL_AMOUNT + " < 0 THEN " + COL_AMOUNT + " ELSE 0 END) AS exp, "
+                + "COUNT(*) AS cnt, SUM(IFNULL(" + COL_AMOUNT + ", 0)) AS net FROM " + TABLE_TRANSACTIONS
+                + " GROUP BY 1)";
+    }
+
+    // Compares the summary table against the raw rows, e.g. after a migration or a time zone
+    // change, and rebuilds it if they disagree. Returns true if the table was already correct.
+    public boolean verifyMonthlySummary() {
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        String expected = summaryFromTransactions();
+
+        // Full outer comparison: months missing on either side or with different totals
+        Cursor cursor = metrics.track(db.rawQuery("SELECT COUNT(*) FROM (" + expected + ") e"
+                + " LEFT JOIN " + TABLE_MONTHLY_SUMMARY + " s ON s." + COL_YEAR_MONTH + " = e.ym"
+                + " WHERE s." + COL_YEAR_MONTH + " IS NULL OR s." + COL_TRANSACTION_COUNT + " != e.cnt"
+                + " OR s." + COL_INCOME + " != e.inc OR s." + COL_EXPENSES + " != e.exp"
+                + " OR s." + COL_CLOSING_BALANCE + " != e.closing", null));
+        int mismatches = 0;
+        if (cursor.moveToFirst()) {
+            mismatches = cursor.getInt(0);
+        }
+        cursor.close();
+
+        cursor = metrics.track(db.rawQuery("SELECT COUNT(*) FROM " + TABLE_MONTHLY_SUMMARY
+                + " WHERE " + COL_YEAR_MONTH + " NOT IN (SELECT ym FROM (" + expected + "))", null));
+        if (cursor.moveToFirst()) {
+            mismatches += cursor.getInt(0);
+        }
+        cursor.close();
+
+        if (mismatches == 0) {
+            return true;
+        }
+
+        rebuildMonthlySummary();
+        return false;
+    }
+
+    private MonthSummary getMonthSummary(String month) {
+        MonthRange range = parseMonth(month);
+        if (range == null) {
+            return new MonthSummary(0, 0, 0);
+        }
+        return getMonthSummary(range.getStart(), range.getEnd());
+    }
+
+    public long getBalanceForMonth(String month) {
+        return getMonthSummary(month).getNet();
+    }
+
+    public long getIncomeForMonth(String month) {
+        return getMonthSummary(month).getIncome();
+    }
+
+    public long getExpensesForMonth(String month) {
+        return getMonthSummary(month).getExpenses();
     }
 
     public int updateTransaction(Transaction transaction) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
+        Set<Integer> yearMonths = new HashSet<>();
+        int updated;
+        QueryMetrics.Operation operation = metrics.begin(OP_UPDATE_TRANSACTION);
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            boolean successful = false;
+            db.beginTransaction();
+            try {
+                // A changed date moves the row, so both its old and new months change
+                Integer oldYearMonth = storedYearMonth(db, transaction.getId());
+                if (oldYearMonth != null) {
+                    yearMonths.add(oldYearMonth);
+                    yearMonths.add(MonthRange.containing(transaction.getDateMillis()).getYearMonth());
+                }
+
+                ContentValues values = new ContentValues();
+
+                values.put(COL_AMOUNT, transaction.getAmount());
+                values.put(COL_DESCRIPTION, transaction.getDescription());
+                values.put(COL_CATEGORY_ID, getOrCreateCategoryId(db, transaction.getCategory()));
+                values.put(COL_DATE, transaction.getDateMillis());
 
-        values.put(COL_AMOUNT, transaction.getAmount());
-        values.put(COL_DESCRIPTION, transaction.getDescription());
-        values.put(COL_CATEGORY, transaction.getCategory());
-        values.put(COL_DATE, dateFormat.format(transaction.getDate()));
+                String[] args = new String[]{String.valueOf(transaction.getId())};
+                updated = db.update(TABLE_TRANSACTIONS, values, COL_ID + " = ?", args);
+
+                ContentValues searchValues = new ContentValues();
+                searchValues.put(COL_DESCRIPTION, transaction.getDescription());
+                searchValues.put(COL_CATEGORY, transaction.getCategory());
+                db.update(TABLE_SEARCH, searchValues, "docid = ?", args);
+
+                db.setTransactionSuccessful();
+                successful = true;
+            } finally {
+                db.endTransaction();
+                if (!successful) {
+                    categories.clear();
+                }
+            }
+        } finally {
+            metrics.end(operation, 1);
+        }
 
-        return db.update(TABLE_TRANSACTIONS, values, COL_ID + " = ?",
-                new String[]{String.valueOf(transaction.getId())});
+        notifyMonthsChanged(yearMonths);
+        return updated;
     }
 }
\ No newline at end of file
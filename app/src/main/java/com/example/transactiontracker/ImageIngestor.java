@@ -0,0 +1,188 @@
+package com.example.transactiontracker;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// Copies picked receipt images into internal storage without ever decoding them at full
+// resolution. Bounds are read first; small JPEGs are copied byte for byte, anything larger is
+// decoded with a power-of-two sample size, scaled to the maximum dimension and recompressed.
+// Files are named by the SHA-256 of the picked image, so attaching the same receipt twice
+// stores it once. Must be called off the main thread.
+public class ImageIngestor {
+    private static final String TAG = "ImageIngestor";
+    public static final int DEFAULT_MAX_DIMENSION = 2048;
+    public static final String TEMP_SUFFIX = ".tmp";
+    private static final int JPEG_QUALITY = 85;
+
+    private final ContentResolver resolver;
+    private final File directory;
+    private final int maxDimension;
+    private final ThumbnailCache thumbnailCache;
+
+    public ImageIngestor(Context context, int maxDimension, ThumbnailCache thumbnailCache) {
+        this.resolver = context.getContentResolver();
+        this.directory = getImageDirectory(context);
+        this.maxDimension = maxDimension;
+        this.thumbnailCache = thumbnailCache;
+    }
+
+    public static File getImageDirectory(Context context) {
+        return new File(context.getFilesDir(), "transaction_images");
+    }
+
+    // Returns the absolute path of the stored image, or null if it couldn't be read
+    public String ingest(Uri imageUri) {
+        try {
+            // Hashing is a cheap sequential read; a hit skips decoding entirely
+            File file = new File(directory, hash(imageUri) + ".jpg");
+            if (file.exists()) {
+                // Refresh the timestamp so the sweeper's grace period covers the pending insert
+                file.setLastModified(System.currentTimeMillis());
+                return file.getAbsolutePath();
+            }
+
+            BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            try (InputStream input = resolver.openInputStream(imageUri)) {
+                BitmapFactory.decodeStream(input, null, bounds);
+            }
+            if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+                return null;
+            }
+
+            if (!directory.exists()) {
+                directory.mkdirs();
+            }
+
+            // Write under a temporary name and rename, so a content-addressed name never
+            // refers to a partially written file
+            File temp = File.createTempFile("ingest_", TEMP_SUFFIX, directory);
+            try {
+                boolean fits = Math.max(bounds.outWidth, bounds.outHeight) <= maxDimension;
+                if (fits && "image/jpeg".equals(bounds.outMimeType)) {
+                    copy(imageUri, temp);
+                } else {
+                    writeDownsampled(imageUri, bounds, temp);
+                }
+                if (!temp.renameTo(file) && !file.exists()) {
+                    throw new IOException("Could not store " + file);
+                }
+            } finally {
+                temp.delete();
+            }
+
+            // Generate the list thumbnail now so scrolling never has to decode the full image
+            thumbnailCache.generate(file.getAbsolutePath());
+            return file.getAbsolutePath();
+        } catch (Exception e) {
+            Log.e(TAG, "Could not store " + imageUri, e);
+            return null;
+        }
+    }
+
+    private String hash(Uri imageUri) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream input = resolver.openInputStream(imageUri)) {
+            if (input == null) {
+                throw new IOException("Could not open " + imageUri);
+            }
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private void copy(Uri imageUri, File file) throws IOException {
+        try (InputStream input = resolver.openInputStream(imageUri);
+             OutputStream output = new FileOutputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+        }
+    }
+
+    private void writeDownsampled(Uri imageUri, BitmapFactory.Options bounds, File file) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = calculateSampleSize(bounds.outWidth, bounds.outHeight, maxDimension);
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+
+        Bitmap bitmap;
+        try (InputStream input = resolver.openInputStream(imageUri)) {
+            bitmap = BitmapFactory.decodeStream(input, null, options);
+        }
+        if (bitmap == null) {
+            throw new IOException("Could not decode " + imageUri);
+        }
+
+        // Sampling only gets within a factor of two; scale the rest of the way and apply the
+        // EXIF rotation, since recompressing drops the original metadata
+        Matrix matrix = new Matrix();
+        float scale = Math.min(1f, (float) maxDimension / Math.max(bitmap.getWidth(), bitmap.getHeight()));
+        matrix.postScale(scale, scale);
+        matrix.postRotate(readRotation(imageUri));
+
+        Bitmap output = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (output != bitmap) {
+            bitmap.recycle();
+        }
+
+        try (OutputStream stream = new FileOutputStream(file)) {
+            output.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, stream);
+        } finally {
+            output.recycle();
+        }
+    }
+
+    private int readRotation(Uri imageUri) {
+        try (InputStream input = resolver.openInputStream(imageUri)) {
+            int orientation = new ExifInterface(input).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            switch (orientation) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    // Largest power of two that keeps the decoded image at least maxDimension on its long side
+    static int calculateSampleSize(int width, int height, int maxDimension) {
+        int longSide = Math.max(width, height);
+        int sampleSize = 1;
+        while (longSide / (sampleSize * 2) >= maxDimension) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
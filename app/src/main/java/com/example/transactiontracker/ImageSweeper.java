@@ -0,0 +1,87 @@
+package com.example.transactiontracker;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// Deletes stored receipt images that no transaction references any more. Image files are
+// shared between transactions, so a file is only garbage once no transaction_images row
+// points at it. Files are checked in batches, each batch being one indexed query. Must run on
+// the thread that ingests images, so no file is reused while it's being swept.
+public class ImageSweeper {
+    private static final int BATCH_SIZE = 100;
+    // Images are written before their transaction is inserted; leave recent files alone so an
+    // in-flight add isn't swept
+    private static final long GRACE_PERIOD_MILLIS = 60 * 60 * 1000L;
+
+    private final DatabaseHelper dbHelper;
+    private final File directory;
+    private final ThumbnailCache thumbnailCache;
+
+    public ImageSweeper(DatabaseHelper dbHelper, File directory, ThumbnailCache thumbnailCache) {
+        this.dbHelper = dbHelper;
+        this.directory = directory;
+        this.thumbnailCache = thumbnailCache;
+    }
+
+    // Returns the number of files deleted. Does nothing while a migration job is unfinished,
+    // since rows it hasn't copied yet may be the only reference to a file.
+    public int sweep() {
+        if (dbHelper.hasPendingMigrationJobs()) {
+            return 0;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        long cutoff = System.currentTimeMillis() - GRACE_PERIOD_MILLIS;
+        int deleted = 0;
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+
+        for (File file : files) {
+            if (!file.isFile() || file.lastModified() > cutoff) {
+                continue;
+            }
+            if (file.getName().endsWith(ImageIngestor.TEMP_SUFFIX)) {
+                // Left behind by an ingestion that was killed midway
+                if (file.delete()) {
+                    deleted++;
+                }
+                continue;
+            }
+
+            batch.add(file.getAbsolutePath());
+            if (batch.size() == BATCH_SIZE) {
+                deleted += deleteUnreferenced(batch, cutoff);
+                batch.clear();
+            }
+        }
+
+        deleted += deleteUnreferenced(batch, cutoff);
+        return deleted;
+    }
+
+    private int deleteUnreferenced(List<String> paths, long cutoff) {
+        if (paths.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> referenced = dbHelper.getReferencedImagePaths(paths);
+        int deleted = 0;
+        for (String path : paths) {
+            if (referenced.contains(path)) {
+                continue;
+            }
+            // Checked again right before deleting: an ingest that reused the file since it was
+            // listed refreshed its timestamp, and its insert may not have committed yet
+            File file = new File(path);
+            if (file.lastModified() <= cutoff && file.delete()) {
+                thumbnailCache.remove(path);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.transactiontracker;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+// Writes the full ledger as CSV or JSON straight from a database cursor into a buffered
+// writer, optionally gzipped. Rows are emitted as they are read, so peak memory stays flat.
+public class LedgerExporter {
+    public enum Format {
+        CSV("csv", "text/csv"),
+        JSON("json", "application/json");
+
+        private final String extension;
+        private final String mimeType;
+
+        Format(String extension, String mimeType) {
+            this.extension = extension;
+            this.mimeType = mimeType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DatabaseHelper dbHelper;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX", Locale.US);
+    private final Date date = new Date();
+    private int rowCount;
+
+    public LedgerExporter(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    public static String fileName(Format format, boolean gzip) {
+        return "transactions." + format.getExtension() + (gzip ? ".gz" : "");
+    }
+
+    // Returns the number of transactions written. Closes the output stream.
+    public int export(OutputStream output, Format format, boolean gzip) throws IOException {
+        rowCount = 0;
+        OutputStream target = gzip ? new GZIPOutputStream(output, BUFFER_SIZE) : output;
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            if (format == Format.CSV) {
+                writeCsv(writer);
+            } else {
+                writeJson(writer);
+            }
+        }
+        return rowCount;
+    }
+
+    private void writeCsv(Writer writer) throws IOException {
+        writer.write("id,date,amount,description,category,images\n");
+
+        dbHelper.streamLedger((id, millis, amount, description, category, imagePaths) -> {
+            writer.write(Long.toString(id));
+            writer.write(',');
+            writer.write(formatDate(millis));
+            writer.write(',');
+            writer.write(formatAmount(amount));
+            writer.write(',');
+            writeCsvField(writer, description);
+            writer.write(',');
+            writeCsvField(writer, category);
+            writer.write(',');
+            writeCsvField(writer, imagePaths);
+            writer.write('\n');
+            rowCount++;
+        });
+    }
+
+    private void writeJson(Writer writer) throws IOException {
+        writer.write("[");
+
+        dbHelper.streamLedger((id, millis, amount, description, category, imagePaths) -> {
+            if (rowCount > 0) {
+                writer.write(',');
+            }
+            writer.write("\n{\"id\":");
+            writer.write(Long.toString(id));
+            writer.write(",\"date\":\"");
+            writer.write(formatDate(millis));
+            writer.write("\",\"amount\":");
+            writer.write(formatAmount(amount));
+            writer.write(",\"description\":");
+            writeJsonString(writer, description);
+            writer.write(",\"category\":");
+            writeJsonString(writer, category);
+            writer.write(",\"images\":[");
+            if (imagePaths != null) {
+                String[] paths = imagePaths.split("\\|");
+                for (int i = 0; i < paths.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writeJsonString(writer, paths[i]);
+                }
+            }
+            writer.write("]}");
+            rowCount++;
+        });
+
+        writer.write("\n]\n");
+    }
+
+    private String formatDate(long millis) {
+        date.setTime(millis);
+        return dateFormat.format(date);
+    }
+
+    private static String formatAmount(long amount) {
+        return Money.toPlainString(amount);
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format(Locale.US, "\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+}
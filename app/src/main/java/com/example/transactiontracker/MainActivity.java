@@ -3,48 +3,69 @@ package com.example.transactiontracker;
 import android.Manifest;
 import android.app.AlertDialog;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.provider.MediaStore;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.ArrayAdapter;
 import android.widget.NumberPicker;
+import android.widget.PopupMenu;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
+import androidx.annotation.NonNull;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 import androidx.core.view.WindowCompat;
 import androidx.core.view.WindowInsetsCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.transactiontracker.databinding.ActivityMainBinding;
 import com.example.transactiontracker.databinding.DialogAddTransactionBinding;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
 public class MainActivity extends AppCompatActivity implements TransactionAdapter.OnTransactionClickListener {
+    private static final int PAGE_PREFETCH_DISTANCE = 10;
+
     private ActivityMainBinding binding;
     private TransactionAdapter adapter;
     private DatabaseHelper dbHelper;
+    private TransactionRepository repository;
+    private ThumbnailCache thumbnailCache;
     private List<Uri> selectedImages;
     private ActivityResultLauncher<String> requestPermissionLauncher;
     private ActivityResultLauncher<Intent> imagePickerLauncher;
+    private ActivityResultLauncher<String[]> importLauncher;
+    private ActivityResultLauncher<String> exportLauncher;
+    private LedgerExporter.Format pendingExportFormat;
+    private boolean pendingExportGzip;
 
     private Calendar currentMonth;
+    private MonthRange displayedRange;
+    // Non-empty while the list shows search results instead of the month
+    private String searchQuery = "";
+    private Transaction lastLoadedTransaction;
+    private boolean hasMorePages;
+    private boolean loadingPage;
     private SimpleDateFormat monthFormat;
     private NumberFormat currencyFormat;
 
@@ -73,6 +94,13 @@ public class MainActivity extends AppCompatActivity implements TransactionAdapte
         });
 
         dbHelper = new DatabaseHelper(this);
+        // Query counting wraps every cursor, so it stays off in release builds
+        dbHelper.getMetrics().setEnabled(isDebuggable());
+        thumbnailCache = new ThumbnailCache(this);
+        repository = new TransactionRepository(dbHelper, new TransactionFormatter(),
+                new ImageIngestor(this, ImageIngestor.DEFAULT_MAX_DIMENSION, thumbnailCache),
+                new ImageSweeper(dbHelper, ImageIngestor.getImageDirectory(this), thumbnailCache),
+                new StartupSnapshot(this));
         selectedImages = new ArrayList<>();
 
         // Initialize current month to current date
@@ -83,9 +111,38 @@ public class MainActivity extends AppCompatActivity implements TransactionAdapte
 
         setupPermissionLauncher();
         setupImagePickerLauncher();
+        setupImportLauncher();
+        setupExportLauncher();
         initViews();
-        updateMonthDisplay();
-        loadMonthTransactions();
+        // Draw this month straight from the last session's snapshot; loadMonth then checks it
+        // against the database and only updates the screen if something changed
+        MonthData snapshot = repository.readStartupSnapshot(MonthRange.of(currentMonth));
+        if (snapshot != null) {
+            showMonth(snapshot);
+        }
+        loadMonth();
+        // Sweeps orphaned images once every job has finished
+        runPendingMigrations();
+    }
+
+    private void runPendingMigrations() {
+        repository.runPendingMigrations(progress -> {
+            if (binding == null || progress.isFinished()) {
+                return;
+            }
+            binding.importProgressContainer.setVisibility(View.VISIBLE);
+            binding.importStatusText.setText(getString(R.string.migration_progress,
+                    progress.getRowsDone(), progress.getRowsTotal()));
+        }, succeeded -> {
+            if (binding == null) {
+                return;
+            }
+            binding.importProgressContainer.setVisibility(View.GONE);
+            if (!succeeded) {
+                Toast.makeText(this, R.string.migration_failed, Toast.LENGTH_LONG).show();
+            }
+            loadMonth();
+        });
     }
 
     private void setupPermissionLauncher() {
@@ -115,39 +172,177 @@ public class MainActivity extends AppCompatActivity implements TransactionAdapte
         );
     }
 
+    private void setupImportLauncher() {
+        importLauncher = registerForActivityResult(
+                new ActivityResultContracts.OpenDocument(),
+                uri -> {
+                    if (uri != null) {
+                        importStatement(uri);
+                    }
+                }
+        );
+    }
+
+    private void setupExportLauncher() {
+        exportLauncher = registerForActivityResult(
+                new ActivityResultContracts.CreateDocument("*/*"),
+                uri -> {
+                    if (uri != null && pendingExportFormat != null) {
+                        exportLedger(uri, pendingExportFormat, pendingExportGzip);
+                    }
+                }
+        );
+    }
+
     private void initViews() {
-        binding.recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        adapter = new TransactionAdapter(new ArrayList<>(), this);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        binding.recyclerView.setLayoutManager(layoutManager);
+        adapter = new TransactionAdapter(new ArrayList<>(), this, thumbnailCache);
         binding.recyclerView.setAdapter(adapter);
 
+        // Fetch the next page shortly before the user reaches the end of the loaded rows
+        binding.recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (dy > 0 && lastVisible >= adapter.getItemCount() - PAGE_PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        binding.searchInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                String query = s.toString().trim();
+                if (query.equals(searchQuery)) {
+                    return;
+                }
+                searchQuery = query;
+                if (query.isEmpty()) {
+                    repository.cancelSearch();
+                    loadMonth();
+                } else {
+                    repository.search(query, MainActivity.this::showSearchResults);
+                }
+            }
+        });
+
         binding.fabAdd.setOnClickListener(v -> showAddTransactionDialog());
+        binding.moreButton.setOnClickListener(this::showMoreMenu);
 
         // Month navigation buttons
         binding.previousMonthButton.setOnClickListener(v -> {
             currentMonth.add(Calendar.MONTH, -1);
-            updateMonthDisplay();
-            loadMonthTransactions();
+            loadMonth();
         });
 
         binding.nextMonthButton.setOnClickListener(v -> {
             currentMonth.add(Calendar.MONTH, 1);
-            updateMonthDisplay();
-            loadMonthTransactions();
+            loadMonth();
         });
     }
 
-    private void updateMonthDisplay() {
-        String monthStr = monthFormat.format(currentMonth.getTime());
-        binding.currentMonthText.setText(monthStr);
+    private void loadMonth() {
+        binding.currentMonthText.setText(monthFormat.format(currentMonth.getTime()));
 
+        // Rapid navigation supersedes earlier loads, so only the last month is queried
+        loadingPage = false;
+        repository.loadMonth(MonthRange.of(currentMonth), this::showMonth);
+        if (!searchQuery.isEmpty()) {
+            // Writes reload the month; refresh the results too so they aren't stale
+            repository.search(searchQuery, this::showSearchResults);
+        }
+    }
+
+    // After a write: redraws only the rows that changed, keeping at most the first page loaded
+    private void reloadMonth() {
+        MonthRange range = MonthRange.of(currentMonth);
+        if (displayedRange == null || displayedRange.getYearMonth() != range.getYearMonth()) {
+            loadMonth();
+            return;
+        }
+        loadingPage = false;
+        repository.reloadMonth(range, lastLoadedTransaction, this::showMonth);
+        if (!searchQuery.isEmpty()) {
+            repository.search(searchQuery, this::showSearchResults);
+        }
+    }
+
+    private void showSearchResults(List<TransactionDisplayModel> results) {
+        if (binding == null || results == null || searchQuery.isEmpty()) {
+            return;
+        }
+        hasMorePages = false;
+        adapter.updateTransactions(new ArrayList<>(results));
+        binding.recyclerView.scrollToPosition(0);
+    }
+
+    private void showMonth(MonthData data) {
+        if (binding == null) {
+            return;
+        }
+        if (data == null) {
+            new AlertDialog.Builder(this)
+                    .setMessage(R.string.load_failed)
+                    .setPositiveButton(R.string.retry_button, (dialog, which) -> loadMonth())
+                    .setNegativeButton(R.string.cancel_button, null)
+                    .show();
+            return;
+        }
+        if (data.isUnchanged()) {
+            return; // Already drawn from the startup snapshot
+        }
+        displayedRange = data.getRange();
+        hasMorePages = data.hasMore();
+        lastLoadedTransaction = lastOf(data.getTransactions());
+
+        updateMonthDisplay(data.getSummary());
+        if (!searchQuery.isEmpty()) {
+            return; // The list keeps showing search results until the query is cleared
+        }
+        adapter.updateTransactions(new ArrayList<>(data.getTransactions()));
+    }
+
+    private void loadNextPage() {
+        if (!hasMorePages || loadingPage || displayedRange == null || !searchQuery.isEmpty()) {
+            return;
+        }
+        loadingPage = true;
+        repository.loadPage(displayedRange, lastLoadedTransaction, page -> {
+            loadingPage = false;
+            if (binding == null || page == null) {
+                return;
+            }
+            hasMorePages = page.size() == TransactionRepository.PAGE_SIZE;
+            if (!page.isEmpty()) {
+                lastLoadedTransaction = lastOf(page);
+                adapter.appendTransactions(page);
+            }
+        });
+    }
+
+    private static Transaction lastOf(List<TransactionDisplayModel> transactions) {
+        return transactions.isEmpty() ? null : transactions.get(transactions.size() - 1).getTransaction();
+    }
+
+    private void updateMonthDisplay(MonthSummary summary) {
         // Update statistics
-        double income = dbHelper.getIncomeForMonth(monthStr);
-        double expenses = dbHelper.getExpensesForMonth(monthStr);
-        double profitLoss = income + expenses; // expenses are negative
+        long income = summary.getIncome();
+        long expenses = summary.getExpenses();
+        long profitLoss = summary.getNet(); // expenses are negative
 
-        binding.incomeText.setText(currencyFormat.format(income));
-        binding.expensesText.setText(currencyFormat.format(Math.abs(expenses)));
-        binding.profitLossText.setText(currencyFormat.format(profitLoss));
+        binding.incomeText.setText(currencyFormat.format(Money.toMajor(income)));
+        binding.expensesText.setText(currencyFormat.format(Money.toMajor(Math.abs(expenses))));
+        binding.profitLossText.setText(currencyFormat.format(Money.toMajor(profitLoss)));
 
         // Color profit/loss based on value
         if (profitLoss < 0) {
@@ -159,10 +354,205 @@ public class MainActivity extends AppCompatActivity implements TransactionAdapte
         }
     }
 
-    private void loadMonthTransactions() {
-        String monthStr = monthFormat.format(currentMonth.getTime());
-        List<Transaction> transactions = dbHelper.getTransactionsByMonth(monthStr);
-        adapter.updateTransactions(transactions);
+    private void showMoreMenu(View anchor) {
+        PopupMenu popup = new PopupMenu(this, anchor);
+        popup.inflate(R.menu.menu_main);
+        popup.setOnMenuItemClickListener(item -> {
+            if (item.getItemId() == R.id.action_import_statement) {
+                importLauncher.launch(new String[]{"text/*", "application/x-ofx",
+                        "application/vnd.intu.qfx", "application/octet-stream"});
+                return true;
+            } else if (item.getItemId() == R.id.action_export_ledger) {
+                showExportDialog();
+                return true;
+            } else if (item.getItemId() == R.id.action_category_breakdown) {
+                showCategoryBreakdown();
+                return true;
+            } else if (item.getItemId() == R.id.action_report) {
+                showReportDialog();
+                return true;
+            } else if (item.getItemId() == R.id.action_query_metrics) {
+                showQueryMetrics();
+                return true;
+            }
+            return false;
+        });
+        popup.getMenu().findItem(R.id.action_query_metrics).setVisible(isDebuggable());
+        popup.show();
+    }
+
+    private void importStatement(Uri uri) {
+        binding.importProgressContainer.setVisibility(View.VISIBLE);
+        binding.importStatusText.setText(getString(R.string.import_progress, 0, 0));
+
+        repository.importStatement(getContentResolver(), uri, getString(R.string.import_default_category),
+                (rowsRead, imported) -> {
+                    if (binding != null) {
+                        binding.importStatusText.setText(getString(R.string.import_progress, rowsRead, imported));
+                    }
+                },
+                result -> {
+                    if (binding == null) {
+                        return;
+                    }
+                    binding.importProgressContainer.setVisibility(View.GONE);
+                    if (result == null) {
+                        Toast.makeText(this, R.string.import_failed, Toast.LENGTH_LONG).show();
+                        return;
+                    }
+                    Toast.makeText(this, getString(R.string.import_finished, result.getImported(),
+                            result.getDuplicates(), result.getInvalid()), Toast.LENGTH_LONG).show();
+                    loadMonth();
+                });
+    }
+
+    private void showCategoryBreakdown() {
+        if (displayedRange == null) {
+            return;
+        }
+        String month = monthFormat.format(new Date(displayedRange.getStart()));
+        repository.loadCategoryBreakdown(displayedRange, breakdown -> {
+            if (breakdown == null) {
+                return;
+            }
+            StringBuilder message = new StringBuilder();
+            for (CategoryTotal total : breakdown) {
+                String category = total.getCategory() != null
+                        ? total.getCategory() : getString(R.string.category_none);
+                if (message.length() > 0) {
+                    message.append('\n');
+                }
+                message.append(getString(R.string.category_breakdown_item, category,
+                        currencyFormat.format(Money.toMajor(total.getNet())), total.getCount()));
+            }
+            if (breakdown.isEmpty()) {
+                message.append(getString(R.string.category_breakdown_empty));
+            }
+
+            new AlertDialog.Builder(this)
+                    .setTitle(getString(R.string.category_breakdown_title, month))
+                    .setMessage(message)
+                    .setPositiveButton(R.string.ok_button, null)
+                    .show();
+        });
+    }
+
+    private void showReportDialog() {
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.report_title)
+                .setItems(R.array.report_granularities,
+                        (dialog, which) -> showReport(ReportGranularity.values()[which]))
+                .setNegativeButton(R.string.cancel_button, null)
+                .show();
+    }
+
+    // Days and weeks of the displayed month, or the months or years leading up to it
+    private void showReport(ReportGranularity granularity) {
+        MonthRange month = MonthRange.of(currentMonth);
+        long start = month.getStart();
+        String labelPattern = "d MMM";
+        if (granularity == ReportGranularity.MONTH || granularity == ReportGranularity.YEAR) {
+            Calendar from = (Calendar) currentMonth.clone();
+            if (granularity == ReportGranularity.MONTH) {
+                from.add(Calendar.MONTH, -11);
+                labelPattern = "MMM yyyy";
+            } else {
+                from.add(Calendar.YEAR, -4);
+                labelPattern = "yyyy";
+            }
+            granularity.truncate(from);
+            start = from.getTimeInMillis();
+        }
+        SimpleDateFormat labelFormat = new SimpleDateFormat(labelPattern, Locale.getDefault());
+        String title = getResources().getStringArray(R.array.report_granularities)[granularity.ordinal()];
+
+        repository.loadReport(start, month.getEnd(), granularity, false, report -> {
+            if (report == null) {
+                return;
+            }
+            StringBuilder message = new StringBuilder();
+            for (int i = 0; i < report.size(); i++) {
+                if (i > 0) {
+                    message.append('\n');
+                }
+                message.append(getString(R.string.report_item,
+                        labelFormat.format(new Date(report.getBucketStarts()[i])),
+                        currencyFormat.format(Money.toMajor(report.getIncome()[i])),
+                        currencyFormat.format(Money.toMajor(report.getExpenses()[i])),
+                        report.getCounts()[i]));
+            }
+
+            new AlertDialog.Builder(this)
+                    .setTitle(title)
+                    .setMessage(message)
+                    .setPositiveButton(R.string.ok_button, null)
+                    .show();
+        });
+    }
+
+    private boolean isDebuggable() {
+        return (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    private void showQueryMetrics() {
+        QueryMetrics metrics = dbHelper.getMetrics();
+        StringWriter report = new StringWriter();
+        metrics.dump("", new PrintWriter(report));
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.query_metrics_title)
+                .setMessage(report.toString())
+                .setPositiveButton(R.string.ok_button, null)
+                .setNeutralButton(R.string.query_metrics_reset, (dialog, which) -> metrics.reset())
+                .setNegativeButton(metrics.isEnabled() ? R.string.query_metrics_disable : R.string.query_metrics_enable,
+                        (dialog, which) -> metrics.setEnabled(!metrics.isEnabled()))
+                .show();
+    }
+
+    // adb shell dumpsys activity com.example.transactiontracker/.MainActivity [--metrics-on|--metrics-off|--metrics-reset]
+    @Override
+    public void dump(@NonNull String prefix, FileDescriptor fd, @NonNull PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        if (dbHelper == null) {
+            return;
+        }
+        QueryMetrics metrics = dbHelper.getMetrics();
+        if (args != null) {
+            for (String arg : args) {
+                if ("--metrics-on".equals(arg)) {
+                    metrics.setEnabled(true);
+                } else if ("--metrics-off".equals(arg)) {
+                    metrics.setEnabled(false);
+                } else if ("--metrics-reset".equals(arg)) {
+                    metrics.reset();
+                }
+            }
+        }
+        metrics.dump(prefix, writer);
+    }
+
+    private void showExportDialog() {
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.export_title)
+                .setItems(R.array.export_formats, (dialog, which) -> {
+                    // Items are CSV, CSV (gzip), JSON, JSON (gzip)
+                    pendingExportFormat = which < 2 ? LedgerExporter.Format.CSV : LedgerExporter.Format.JSON;
+                    pendingExportGzip = which % 2 == 1;
+                    exportLauncher.launch(LedgerExporter.fileName(pendingExportFormat, pendingExportGzip));
+                })
+                .setNegativeButton(R.string.cancel_button, null)
+                .show();
+    }
+
+    private void exportLedger(Uri uri, LedgerExporter.Format format, boolean gzip) {
+        Toast.makeText(this, R.string.export_started, Toast.LENGTH_SHORT).show();
+        repository.exportLedger(getContentResolver(), uri, format, gzip, rowCount -> {
+            if (rowCount == null) {
+                Toast.makeText(this, R.string.export_failed, Toast.LENGTH_LONG).show();
+            } else {
+                Toast.makeText(this, getString(R.string.export_finished, rowCount), Toast.LENGTH_LONG).show();
+            }
+        });
     }
 
     private void showAddTransactionDialog() {
@@ -233,7 +623,13 @@ public class MainActivity extends AppCompatActivity implements TransactionAdapte
                 return;
             }
 
-            double amount = Double.parseDouble(amountStr);
+            long amount;
+            try {
+                amount = Money.parse(amountStr);
+            } catch (NumberFormatException | ArithmeticException e) {
+                Toast.makeText(this, R.string.invalid_amount, Toast.LENGTH_SHORT).show();
+                return;
+            }
             if (dialogBinding.expenseRadio.isChecked()) {
                 amount = -Math.abs(amount);
             } else {
@@ -254,25 +650,18 @@ public class MainActivity extends AppCompatActivity implements TransactionAdapte
 
             transaction.setDate(selectedCalendar.getTime());
 
-            for (Uri imageUri : selectedImages) {
-                String savedPath = saveImageToInternalStorage(imageUri);
-                if (savedPath != null) {
-                    transaction.addImagePath(savedPath);
+            // Images are downsampled and stored in the background before the insert
+            repository.addTransaction(transaction, selectedImages, added -> {
+                if (!added) {
+                    Toast.makeText(this, R.string.save_failed, Toast.LENGTH_LONG).show();
+                    return;
                 }
-            }
-
-            dbHelper.addTransaction(transaction);
-
-            // Check if the added transaction is in the current displayed month
-            String transactionMonth = monthFormat.format(transaction.getDate());
-            String displayedMonth = monthFormat.format(currentMonth.getTime());
-
-            if (transactionMonth.equals(displayedMonth)) {
-                loadMonthTransactions();
-            }
-
-            updateMonthDisplay();
-            Toast.makeText(this, R.string.transaction_added, Toast.LENGTH_SHORT).show();
+                // Anything up to the end of the displayed month changes its running balances
+                if (transaction.getDateMillis() < MonthRange.of(currentMonth).getEnd()) {
+                    reloadMonth();
+                }
+                Toast.makeText(this, R.string.transaction_added, Toast.LENGTH_SHORT).show();
+            });
         });
 
         builder.setNegativeButton(R.string.cancel_button, null);
@@ -302,38 +691,20 @@ public class MainActivity extends AppCompatActivity implements TransactionAdapte
         imagePickerLauncher.launch(intent);
     }
 
-    private String saveImageToInternalStorage(Uri imageUri) {
-        try {
-            Bitmap bitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), imageUri);
-            File directory = new File(getFilesDir(), "transaction_images");
-            if (!directory.exists()) {
-                directory.mkdirs();
-            }
-
-            String filename = "IMG_" + System.currentTimeMillis() + ".jpg";
-            File file = new File(directory, filename);
-
-            FileOutputStream fos = new FileOutputStream(file);
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 85, fos);
-            fos.close();
-
-            return file.getAbsolutePath();
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
-    }
-
     @Override
     public void onDeleteClick(Transaction transaction) {
         new AlertDialog.Builder(this)
                 .setTitle(R.string.delete_transaction_title)
                 .setMessage(R.string.delete_transaction_message)
                 .setPositiveButton(R.string.delete_confirm, (dialog, which) -> {
-                    dbHelper.deleteTransaction(transaction.getId());
-                    loadMonthTransactions();
-                    updateMonthDisplay();
-                    Toast.makeText(this, R.string.transaction_deleted, Toast.LENGTH_SHORT).show();
+                    repository.deleteTransaction(transaction, deleted -> {
+                        if (!deleted) {
+                            Toast.makeText(this, R.string.save_failed, Toast.LENGTH_LONG).show();
+                            return;
+                        }
+                        reloadMonth();
+                        Toast.makeText(this, R.string.transaction_deleted, Toast.LENGTH_SHORT).show();
+                    });
                 })
                 .setNegativeButton(R.string.cancel_button, null)
                 .show();
@@ -346,7 +717,7 @@ public class MainActivity extends AppCompatActivity implements TransactionAdapte
 
         String message = getString(R.string.detail_description, transaction.getDescription()) + "\n" +
                 getString(R.string.detail_category, transaction.getCategory()) + "\n" +
-                getString(R.string.detail_amount, String.valueOf(transaction.getAmount())) + "\n" +
+                getString(R.string.detail_amount, Money.toPlainString(transaction.getAmount())) + "\n" +
                 getString(R.string.detail_date, transaction.getDate().toString());
 
         builder.setMessage(message);
@@ -357,6 +728,8 @@ public class MainActivity extends AppCompatActivity implements TransactionAdapte
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        repository.close();
+        thumbnailCache.close();
         binding = null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.example.transactiontracker;
+
+// How far the pending background migration jobs have got, in rows
+public class MigrationProgress {
+    private final long rowsDone;
+    private final long rowsTotal;
+
+    public MigrationProgress(long rowsDone, long rowsTotal) {
+        this.rowsDone = rowsDone;
+        this.rowsTotal = rowsTotal;
+    }
+
+    public long getRowsDone() {
+        return rowsDone;
+    }
+
+    public long getRowsTotal() {
+        return rowsTotal;
+    }
+
+    public boolean isFinished() {
+        return rowsDone >= rowsTotal;
+    }
+}
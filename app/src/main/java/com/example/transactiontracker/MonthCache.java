@@ -0,0 +1,54 @@
+package com.example.transactiontracker;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Recently loaded months keyed by yyyyMM, least recently used evicted first. Loads run on
+// background threads while writes invalidate from whichever thread committed them, so a load
+// records the version it started at and its result is dropped if an invalidation came between.
+public class MonthCache {
+    private final Map<Integer, MonthData> months;
+    private long version;
+
+    public MonthCache(int maxMonths) {
+        this.months = new LinkedHashMap<Integer, MonthData>(maxMonths + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, MonthData> eldest) {
+                return size() > maxMonths;
+            }
+        };
+    }
+
+    public synchronized MonthData get(MonthRange range) {
+        return months.get(range.getYearMonth());
+    }
+
+    public synchronized boolean contains(MonthRange range) {
+        return months.containsKey(range.getYearMonth());
+    }
+
+    // Read before starting a load and pass to put()
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized void put(MonthData month, long loadedAtVersion) {
+        if (loadedAtVersion == version) {
+            months.put(month.getRange().getYearMonth(), month);
+        }
+    }
+
+    // yearMonths holds yyyyMM keys, or null to drop every month. Running balances carry a
+    // change forward, so every month from the earliest one given is dropped.
+    public synchronized void invalidate(Set<Integer> yearMonths) {
+        version++;
+        if (yearMonths == null) {
+            months.clear();
+        } else if (!yearMonths.isEmpty()) {
+            int earliest = Collections.min(yearMonths);
+            months.keySet().removeIf(yearMonth -> yearMonth >= earliest);
+        }
+    }
+}
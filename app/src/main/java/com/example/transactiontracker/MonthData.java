@@ -0,0 +1,60 @@
+package com.example.transactiontracker;
+
+import java.util.List;
+
+public class MonthData {
+    private final MonthRange range;
+    private final MonthSummary summary;
+    private final List<TransactionDisplayModel> transactions;
+    private final boolean hasMore;
+    private final MonthSnapshot snapshot;
+    private final boolean unchanged;
+
+    public MonthData(MonthRange range, MonthSummary summary, List<TransactionDisplayModel> transactions, boolean hasMore,
+                     MonthSnapshot snapshot) {
+        this(range, summary, transactions, hasMore, snapshot, false);
+    }
+
+    private MonthData(MonthRange range, MonthSummary summary, List<TransactionDisplayModel> transactions,
+                      boolean hasMore, MonthSnapshot snapshot, boolean unchanged) {
+        this.range = range;
+        this.summary = summary;
+        this.transactions = transactions;
+        this.hasMore = hasMore;
+        this.snapshot = snapshot;
+        this.unchanged = unchanged;
+    }
+
+    // The same month, marked as identical to what the startup snapshot already drew
+    public MonthData asUnchanged() {
+        return new MonthData(range, summary, transactions, hasMore, snapshot, true);
+    }
+
+    public MonthRange getRange() {
+        return range;
+    }
+
+    public MonthSummary getSummary() {
+        return summary;
+    }
+
+    // The month's first page, or the rows a reload read again, newest first
+    public List<TransactionDisplayModel> getTransactions() {
+        return transactions;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    // Every row of the month in columnar form, or null for a month drawn from the startup
+    // snapshot, which only holds the first page
+    public MonthSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    // True if the screen already shows this month from the startup snapshot
+    public boolean isUnchanged() {
+        return unchanged;
+    }
+}
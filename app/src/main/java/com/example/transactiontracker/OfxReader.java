@@ -0,0 +1,146 @@
+package com.example.transactiontracker;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+// Streaming reader for OFX/QFX statements. Handles both the SGML flavour (unclosed leaf tags)
+// and the XML flavour, reading one <STMTTRN> block at a time.
+public class OfxReader {
+    private final Reader reader;
+    private final String defaultCategory;
+    private final StringBuilder token = new StringBuilder();
+    private final SimpleDateFormat dateTimeFormat = new SimpleDateFormat("yyyyMMddHHmmss", Locale.US);
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd", Locale.US);
+    private int pending = -2; // -2 means nothing buffered
+    private int invalidCount;
+
+    public OfxReader(Reader reader, String defaultCategory) {
+        this.reader = reader;
+        this.defaultCategory = defaultCategory;
+    }
+
+    // Returns the next statement transaction, or null at the end of the input. Transactions
+    // missing a date or amount are skipped and counted.
+    public Transaction readTransaction() throws IOException {
+        String tag;
+        while ((tag = readTag()) != null) {
+            if (tag.equals("STMTTRN")) {
+                Transaction transaction = readStatementTransaction();
+                if (transaction != null) {
+                    return transaction;
+                }
+                invalidCount++;
+            }
+        }
+        return null;
+    }
+
+    public int getInvalidCount() {
+        return invalidCount;
+    }
+
+    private Transaction readStatementTransaction() throws IOException {
+        Date date = null;
+        Long amount = null;
+        String name = null;
+        String memo = null;
+
+        String tag;
+        while ((tag = readTag()) != null && !tag.equals("/STMTTRN")) {
+            switch (tag) {
+                case "DTPOSTED":
+                    date = parseDate(readValue());
+                    break;
+                case "TRNAMT":
+                    amount = CsvMapping.parseAmount(readValue());
+                    break;
+                case "NAME":
+                    name = readValue();
+                    break;
+                case "MEMO":
+                    memo = readValue();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (date == null || amount == null) {
+            return null;
+        }
+
+        String description = name != null && !name.isEmpty() ? name : (memo != null ? memo : "");
+        Transaction transaction = new Transaction(amount, description, defaultCategory);
+        transaction.setDate(date);
+        return transaction;
+    }
+
+    // Skips to the next tag and returns its name in upper case, e.g. "STMTTRN" or "/STMTTRN"
+    private String readTag() throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != '<') {
+            // Skip text between tags
+        }
+        if (c == -1) {
+            return null;
+        }
+
+        token.setLength(0);
+        while ((c = read()) != -1 && c != '>') {
+            token.append((char) c);
+        }
+        return token.toString().trim().toUpperCase(Locale.ROOT);
+    }
+
+    // Reads the text following a leaf tag, up to the next tag or line break
+    private String readValue() throws IOException {
+        token.setLength(0);
+        int c;
+        while ((c = read()) != -1 && c != '<' && c != '\r' && c != '\n') {
+            token.append((char) c);
+        }
+        if (c == '<') {
+            unread(c);
+        }
+        return unescape(token.toString().trim());
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('&') < 0) {
+            return value;
+        }
+        return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+    // OFX dates look like 20251231, 20251231120000 or 20251231120000.000[-5:EST]
+    private Date parseDate(String value) {
+        if (value.length() >= 14) {
+            Date date = dateTimeFormat.parse(value.substring(0, 14), new ParsePosition(0));
+            if (date != null) {
+                return date;
+            }
+        }
+        if (value.length() >= 8) {
+            return dateFormat.parse(value.substring(0, 8), new ParsePosition(0));
+        }
+        return null;
+    }
+
+    private int read() throws IOException {
+        if (pending != -2) {
+            int c = pending;
+            pending = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private void unread(int c) {
+        pending = c;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.transactiontracker;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.os.Trace;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Query counts, rows fetched and returned, and latency histograms per database operation, plus
+// query budgets for whole screen loads. Rows fetched are the cursor rows the app stepped
+// through, not the rows SQLite examined to produce them; returned is what the operation handed
+// its caller. Operations nest: a screen load started in the
+// repository adds up the queries of every DatabaseHelper call made inside it. While disabled,
+// begin() returns null and every other call returns straight away, so the cost is a volatile
+// read per operation and per query.
+public class QueryMetrics {
+    private static final String TAG = "QueryMetrics";
+    // Upper bounds of the latency buckets in microseconds; the last bucket is open ended
+    private static final long[] BUCKET_BOUNDS_MICROS = {100, 250, 500, 1_000, 2_500, 5_000,
+            10_000, 25_000, 50_000, 100_000};
+    private static final String UNSCOPED = "(outside any operation)";
+
+    public static class Operation {
+        private final String name;
+        private final long startNanos;
+        private final Operation parent;
+        private int queries;
+        private long rowsFetched;
+
+        private Operation(String name, long startNanos, Operation parent) {
+            this.name = name;
+            this.startNanos = startNanos;
+            this.parent = parent;
+        }
+    }
+
+    private static class Stats {
+        long calls;
+        long queries;
+        long rowsFetched;
+        long rowsReturned;
+        long totalNanos;
+        long maxNanos;
+        long overBudget;
+        final long[] buckets = new long[BUCKET_BOUNDS_MICROS.length + 1];
+    }
+
+    private volatile boolean enabled;
+    private final ThreadLocal<Operation> current = new ThreadLocal<>();
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final Map<String, Integer> budgets = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    // Logs a warning whenever the named operation runs more than maxQueries queries
+    public void setBudget(String operation, int maxQueries) {
+        budgets.put(operation, maxQueries);
+    }
+
+    // Starts an operation on the calling thread, which must pass the result to end() in a
+    // finally block. Returns null while disabled.
+    public Operation begin(String name) {
+        if (!enabled) {
+            return null;
+        }
+        Trace.beginSection(name);
+        Operation operation = new Operation(name, System.nanoTime(), current.get());
+        current.set(operation);
+        return operation;
+    }
+
+    // Counts a query against the current operation, and the rows it fetched once the cursor is
+    // closed. Only the furthest row moved to is counted, so nothing makes the cursor fill more
+    // of its window than the caller reads.
+    public Cursor track(Cursor cursor) {
+        if (!enabled) {
+            return cursor;
+        }
+        Operation operation = current.get();
+        if (operation != null) {
+            operation.queries++;
+        }
+        return new CountingCursor(cursor, operation);
+    }
+
+    private class CountingCursor extends CursorWrapper {
+        // Null for a query made outside any operation
+        private final Operation operation;
+        private int fetched;
+        private boolean counted;
+
+        CountingCursor(Cursor cursor, Operation operation) {
+            super(cursor);
+            this.operation = operation;
+        }
+
+        private boolean moved(boolean moved) {
+            if (moved) {
+                fetched = Math.max(fetched, getPosition() + 1);
+            }
+            return moved;
+        }
+
+        @Override
+        public boolean moveToFirst() {
+            return moved(super.moveToFirst());
+        }
+
+        @Override
+        public boolean moveToNext() {
+            return moved(super.moveToNext());
+        }
+
+        @Override
+        public boolean moveToLast() {
+            return moved(super.moveToLast());
+        }
+
+        @Override
+        public boolean moveToPosition(int position) {
+            return moved(super.moveToPosition(position));
+        }
+
+        @Override
+        public boolean move(int offset) {
+            return moved(super.move(offset));
+        }
+
+        // Rows of a cursor closed after its operation ended are not counted
+        @Override
+        public void close() {
+            super.close();
+            if (counted) {
+                return;
+            }
+            counted = true;
+            if (operation != null) {
+                operation.rowsFetched += fetched;
+            } else {
+                record(UNSCOPED, 1, fetched, 0, 0);
+            }
+        }
+    }
+
+    public void end(Operation operation, long rowsReturned) {
+        if (operation == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - operation.startNanos;
+        Trace.endSection();
+
+        if (operation.parent != null) {
+            operation.parent.queries += operation.queries;
+            operation.parent.rowsFetched += operation.rowsFetched;
+            current.set(operation.parent);
+        } else {
+            current.remove();
+        }
+
+        Stats operationStats = record(operation.name, operation.queries, operation.rowsFetched, rowsReturned, elapsed);
+        Integer budget = budgets.get(operation.name);
+        if (budget != null && operation.queries > budget) {
+            synchronized (operationStats) {
+                operationStats.overBudget++;
+            }
+            Log.w(TAG, operation.name + " ran " + operation.queries + " queries, over its budget of " + budget);
+        }
+    }
+
+    private Stats record(String name, int queries, long rowsFetched, long rowsReturned, long elapsedNanos) {
+        Stats operationStats = stats.get(name);
+        if (operationStats == null) {
+            stats.putIfAbsent(name, new Stats());
+            operationStats = stats.get(name);
+        }
+
+        long micros = elapsedNanos / 1_000;
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[bucket]) {
+            bucket++;
+        }
+
+        synchronized (operationStats) {
+            operationStats.calls++;
+            operationStats.queries += queries;
+            operationStats.rowsFetched += rowsFetched;
+            operationStats.rowsReturned += rowsReturned;
+            operationStats.totalNanos += elapsedNanos;
+            operationStats.maxNanos = Math.max(operationStats.maxNanos, elapsedNanos);
+            operationStats.buckets[bucket]++;
+        }
+        return operationStats;
+    }
+
+    // Writes a snapshot of every operation's counters, e.g. for dumpsys
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "Query metrics (" + (enabled ? "enabled" : "disabled") + ")");
+        for (Map.Entry<String, Stats> entry : new TreeMap<>(stats).entrySet()) {
+            Stats s = entry.getValue();
+            Integer budget = budgets.get(entry.getKey());
+            synchronized (s) {
+                writer.println(String.format(Locale.US,
+                        "%s  %s: %d calls, %d queries, %d rows fetched, %d returned, avg %.2f ms, max %.2f ms%s",
+                        prefix, entry.getKey(), s.calls, s.queries, s.rowsFetched, s.rowsReturned,
+                        s.calls > 0 ? s.totalNanos / 1e6 / s.calls : 0, s.maxNanos / 1e6,
+                        budget != null ? ", budget " + budget + " queries, " + s.overBudget + " over" : ""));
+
+                StringBuilder histogram = new StringBuilder(prefix).append("    latency:");
+                for (int i = 0; i < s.buckets.length; i++) {
+                    histogram.append(i < BUCKET_BOUNDS_MICROS.length
+                            ? String.format(Locale.US, " <=%.2gms %d", BUCKET_BOUNDS_MICROS[i] / 1000.0, s.buckets[i])
+                            : String.format(Locale.US, " >%.2gms %d", BUCKET_BOUNDS_MICROS[i - 1] / 1000.0, s.buckets[i]));
+                }
+                writer.println(histogram);
+            }
+        }
+    }
+}
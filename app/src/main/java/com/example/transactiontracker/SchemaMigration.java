@@ -0,0 +1,30 @@
+package com.example.transactiontracker;
+
+import android.database.sqlite.SQLiteDatabase;
+
+// One versioned schema change. onUpgrade applies every step above the old version, in order,
+// inside its own transaction. Steps should only make quick structural changes; rewriting
+// existing rows is registered as a background migration job instead, so opening the
+// database never blocks on the size of the ledger.
+public class SchemaMigration {
+    public interface Step {
+        void apply(SQLiteDatabase db, int oldVersion);
+    }
+
+    private final int version;
+    private final Step step;
+
+    public SchemaMigration(int version, Step step) {
+        this.version = version;
+        this.step = step;
+    }
+
+    // The version the database is at once this step has run
+    public int getVersion() {
+        return version;
+    }
+
+    public void apply(SQLiteDatabase db, int oldVersion) {
+        step.apply(db, oldVersion);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.transactiontracker;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// The current month's summary and first page, kept in a small binary file so the next
+// launch can draw the screen before the database is opened. The file is only a hint: the
+// repository reloads the month in the background and replaces what was drawn if it changed.
+public class StartupSnapshot {
+    private static final String TAG = "StartupSnapshot";
+    private static final String FILE_NAME = "month_snapshot.bin";
+    private static final int MAGIC = 0x54544d53; // "TTMS"
+    // Bump when the layout below changes; older files are then ignored
+    private static final int FORMAT_VERSION = 2;
+
+    private final File file;
+
+    public StartupSnapshot(Context context) {
+        this.file = new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    // Returns the raw snapshot, or null if there is none
+    public byte[] read() {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (InputStream input = new FileInputStream(file)) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) file.length());
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = input.read(chunk)) != -1) {
+                buffer.write(chunk, 0, read);
+            }
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read " + file, e);
+            return null;
+        }
+    }
+
+    // Replaces the file through a rename, so a crash mid-write leaves the old snapshot intact
+    public void write(byte[] data) {
+        File temp = new File(file.getPath() + ".tmp");
+        try (OutputStream output = new FileOutputStream(temp)) {
+            output.write(data);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write " + temp, e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    // newestBalance is the running balance after the first transaction
+    public static byte[] encode(MonthRange range, MonthSummary summary, List<Transaction> transactions,
+                                long newestBalance, boolean hasMore) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 + transactions.size() * 64);
+        try (DataOutputStream output = new DataOutputStream(buffer)) {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(range.getYear());
+            output.writeInt(range.getMonth());
+            output.writeLong(summary.getIncome());
+            output.writeLong(summary.getExpenses());
+            output.writeInt(summary.getCount());
+            output.writeBoolean(hasMore);
+            output.writeLong(newestBalance);
+
+            output.writeInt(transactions.size());
+            for (Transaction transaction : transactions) {
+                output.writeLong(transaction.getId());
+                output.writeLong(transaction.getDateMillis());
+                output.writeLong(transaction.getAmount());
+                writeString(output, transaction.getDescription());
+                writeString(output, transaction.getCategory());
+                List<String> imagePaths = transaction.getImagePaths();
+                output.writeInt(imagePaths.size());
+                for (String path : imagePaths) {
+                    writeString(output, path);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Not thrown by in-memory streams
+        }
+        return buffer.toByteArray();
+    }
+
+    // Rebuilds the month for display, or returns null if the data isn't a readable snapshot
+    public static MonthData decode(byte[] data, TransactionFormatter formatter) {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            MonthRange range = MonthRange.of(input.readInt(), input.readInt());
+            MonthSummary summary = new MonthSummary(input.readLong(), input.readLong(), input.readInt());
+            boolean hasMore = input.readBoolean();
+            long newestBalance = input.readLong();
+
+            int count = input.readInt();
+            if (count < 0 || count > input.available()) {
+                return null;
+            }
+            List<Transaction> transactions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Transaction transaction = new Transaction();
+                transaction.setId(input.readLong());
+                transaction.setDateMillis(input.readLong());
+                transaction.setAmount(input.readLong());
+                transaction.setDescription(readString(input));
+                transaction.setCategory(readString(input));
+                int imageCount = input.readInt();
+                for (int j = 0; j < imageCount; j++) {
+                    transaction.addImagePath(readString(input));
+                }
+                transactions.add(transaction);
+            }
+            return new MonthData(range, summary, formatter.formatWithBalances(transactions, newestBalance), hasMore,
+                    null);
+        } catch (IOException e) {
+            // Truncated or corrupt, the database load will replace it
+            Log.w(TAG, "Ignoring unreadable snapshot", e);
+            return null;
+        }
+    }
+
+    // Length-prefixed UTF-8, with -1 for null; unlike writeUTF it has no 64 KB limit
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > input.available()) {
+            throw new IOException("Truncated snapshot");
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.transactiontracker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Imports CSV or OFX bank statements. Input is streamed and committed in fixed-size batches,
+// so memory use doesn't depend on the size of the file.
+public class StatementImporter {
+    public static final int BATCH_SIZE = 500;
+    private static final int SNIFF_LENGTH = 4096;
+    // Bytes checked when guessing the encoding of a file without a byte order mark
+    private static final int CHARSET_SAMPLE_LENGTH = 64 * 1024;
+    // Israeli bank exports that aren't UTF-8 are almost always in the Windows Hebrew code page
+    static final Charset FALLBACK_CHARSET = Charset.forName("windows-1255");
+    // Rows read before choosing the date format for the whole file
+    private static final int DATE_SAMPLE_ROWS = 50;
+
+    public interface ProgressListener {
+        void onProgress(int rowsRead, int imported);
+    }
+
+    public static class Result {
+        private final int imported;
+        private final int duplicates;
+        private final int invalid;
+
+        Result(int imported, int duplicates, int invalid) {
+            this.imported = imported;
+            this.duplicates = duplicates;
+            this.invalid = invalid;
+        }
+
+        public int getImported() {
+            return imported;
+        }
+
+        public int getDuplicates() {
+            return duplicates;
+        }
+
+        public int getInvalid() {
+            return invalid;
+        }
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final String defaultCategory;
+    private final ProgressListener listener;
+
+    private List<Transaction> batch = new ArrayList<>(BATCH_SIZE);
+    private long existingMaxId;
+    private int rowsRead;
+    private int imported;
+    private int duplicates;
+    private int invalid;
+
+    public StatementImporter(DatabaseHelper dbHelper, String defaultCategory, ProgressListener listener) {
+        this.dbHelper = dbHelper;
+        this.defaultCategory = defaultCategory;
+        this.listener = listener;
+    }
+
+    public Result importStatement(InputStream input) throws IOException {
+        BufferedInputStream bytes = new BufferedInputStream(input, CHARSET_SAMPLE_LENGTH);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(bytes, detectCharset(bytes)), 64 * 1024);
+
+        // Only rows that existed before the import count as duplicates, so identical lines
+        // within one statement (two coffees on the same day) are all kept
+        existingMaxId = dbHelper.getMaxTransactionId();
+
+        String head = sniff(reader);
+        String upperHead = head.toUpperCase(Locale.ROOT);
+        if (upperHead.contains("OFXHEADER") || upperHead.contains("<OFX")) {
+            importOfx(reader);
+        } else {
+            importCsv(reader, detectDelimiter(head));
+        }
+
+        flush();
+        return new Result(imported, duplicates, invalid);
+    }
+
+    private void importCsv(BufferedReader reader, char delimiter) throws IOException {
+        CsvReader csv = new CsvReader(reader, delimiter);
+
+        List<String> header = csv.readRecord();
+        CsvMapping mapping = header != null ? CsvMapping.fromHeader(header, defaultCategory) : null;
+        if (mapping == null) {
+            throw new IOException("Unrecognized CSV header: " + header);
+        }
+
+        // The date format is chosen once from the first rows, so a later row can't switch it
+        List<List<String>> sample = new ArrayList<>(DATE_SAMPLE_ROWS);
+        List<String> record;
+        while (sample.size() < DATE_SAMPLE_ROWS && (record = csv.readRecord()) != null) {
+            sample.add(record);
+        }
+        mapping.detectDateFormat(sample);
+        for (List<String> sampled : sample) {
+            add(mapping.toTransaction(sampled));
+        }
+
+        while ((record = csv.readRecord()) != null) {
+            add(mapping.toTransaction(record));
+        }
+    }
+
+    private void importOfx(BufferedReader reader) throws IOException {
+        OfxReader ofx = new OfxReader(reader, defaultCategory);
+
+        Transaction transaction;
+        while ((transaction = ofx.readTransaction()) != null) {
+            add(transaction);
+        }
+        invalid += ofx.getInvalidCount();
+        rowsRead += ofx.getInvalidCount();
+    }
+
+    private void add(Transaction transaction) {
+        rowsRead++;
+        if (transaction == null) {
+            invalid++;
+        } else if (dbHelper.hasDuplicate(transaction, existingMaxId)) {
+            duplicates++;
+        } else {
+            batch.add(transaction);
+            if (batch.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+    }
+
+    private void flush() {
+        if (!batch.isEmpty()) {
+            dbHelper.addTransactions(batch);
+            imported += batch.size();
+            batch = new ArrayList<>(BATCH_SIZE);
+        }
+        listener.onProgress(rowsRead, imported);
+    }
+
+    // Reads the byte order mark if there is one and leaves the stream just after it. Without one,
+    // the start of the file is decoded as UTF-8 and the fallback is used if that fails.
+    static Charset detectCharset(BufferedInputStream input) throws IOException {
+        input.mark(CHARSET_SAMPLE_LENGTH);
+        byte[] sample = new byte[CHARSET_SAMPLE_LENGTH];
+        int length = 0;
+        int read;
+        while (length < sample.length && (read = input.read(sample, length, sample.length - length)) != -1) {
+            length += read;
+        }
+        input.reset();
+
+        if (startsWith(sample, length, 0xEF, 0xBB, 0xBF)) {
+            input.skip(3);
+            return StandardCharsets.UTF_8;
+        } else if (startsWith(sample, length, 0xFF, 0xFE)) {
+            input.skip(2);
+            return StandardCharsets.UTF_16LE;
+        } else if (startsWith(sample, length, 0xFE, 0xFF)) {
+            input.skip(2);
+            return StandardCharsets.UTF_16BE;
+        }
+
+        // A full sample may end inside a character, which only counts as an error at the real end
+        CoderResult result = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(sample, 0, length),
+                CharBuffer.allocate(length), length < sample.length);
+        return result.isError() ? FALLBACK_CHARSET : StandardCharsets.UTF_8;
+    }
+
+    private static boolean startsWith(byte[] data, int length, int... prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((data[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String sniff(BufferedReader reader) throws IOException {
+        reader.mark(SNIFF_LENGTH);
+        char[] buffer = new char[SNIFF_LENGTH];
+        int length = reader.read(buffer, 0, SNIFF_LENGTH);
+        reader.reset();
+        return length > 0 ? new String(buffer, 0, length) : "";
+    }
+
+    // Picks whichever of comma, semicolon or tab appears most often in the first line
+    private static char detectDelimiter(String head) {
+        int end = head.indexOf('\n');
+        String firstLine = end >= 0 ? head.substring(0, end) : head;
+
+        char best = ',';
+        int bestCount = 0;
+        for (char candidate : new char[]{',', ';', '\t'}) {
+            int count = 0;
+            for (int i = 0; i < firstLine.length(); i++) {
+                if (firstLine.charAt(i) == candidate) {
+                    count++;
+                }
+            }
+            if (count > bestCount) {
+                best = candidate;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+}
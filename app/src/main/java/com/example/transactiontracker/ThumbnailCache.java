@@ -0,0 +1,151 @@
+package com.example.transactiontracker;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Two-level cache of small receipt thumbnails: an in-memory LRU sized in bytes, backed by
+// pre-generated JPEGs in the cache directory. Thumbnails are written at ingestion time; if the
+// system has cleared the cache directory they are regenerated from the stored image on demand.
+public class ThumbnailCache {
+    private static final String TAG = "ThumbnailCache";
+    public static final int THUMBNAIL_SIZE = 192;
+    private static final int JPEG_QUALITY = 80;
+
+    public interface Callback {
+        void onThumbnail(Bitmap bitmap);
+    }
+
+    private final File directory;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "thumbnail-loader");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public ThumbnailCache(Context context) {
+        this.directory = new File(context.getCacheDir(), "thumbnails");
+
+        // An eighth of the heap comfortably holds a few screens of thumbnails
+        int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE);
+        this.memoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    public Bitmap getFromMemory(String imagePath) {
+        return memoryCache.get(imagePath);
+    }
+
+    // Loads the thumbnail in the background and delivers it on the main thread. The callback
+    // is not invoked if the returned future is cancelled first, or if loading fails.
+    public Future<?> load(String imagePath, Callback callback) {
+        return executor.submit(() -> {
+            Bitmap bitmap = loadBlocking(imagePath);
+            if (bitmap == null || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            mainHandler.post(() -> callback.onThumbnail(bitmap));
+        });
+    }
+
+    // Decodes the stored image down to thumbnail size and writes it to the disk cache. Called
+    // on the ingestion thread right after an image is stored.
+    public Bitmap generate(String imagePath) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(imagePath, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = ImageIngestor.calculateSampleSize(bounds.outWidth, bounds.outHeight, THUMBNAIL_SIZE);
+        Bitmap sampled = BitmapFactory.decodeFile(imagePath, options);
+        if (sampled == null) {
+            return null;
+        }
+
+        float scale = Math.min(1f, (float) THUMBNAIL_SIZE / Math.max(sampled.getWidth(), sampled.getHeight()));
+        Bitmap thumbnail = Bitmap.createScaledBitmap(sampled,
+                Math.max(1, Math.round(sampled.getWidth() * scale)),
+                Math.max(1, Math.round(sampled.getHeight() * scale)), true);
+        if (thumbnail != sampled) {
+            sampled.recycle();
+        }
+
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        // Written under a temporary name and renamed, so neither a crash nor a concurrent load
+        // can leave or read a truncated thumbnail
+        try {
+            File temp = File.createTempFile("thumbnail_", ImageIngestor.TEMP_SUFFIX, directory);
+            try {
+                try (OutputStream output = new FileOutputStream(temp)) {
+                    thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, output);
+                }
+                File file = thumbnailFile(imagePath);
+                if (!temp.renameTo(file) && !file.exists()) {
+                    throw new IOException("Could not store " + file);
+                }
+            } finally {
+                temp.delete();
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not write the thumbnail of " + imagePath, e);
+        }
+
+        memoryCache.put(imagePath, thumbnail);
+        return thumbnail;
+    }
+
+    private Bitmap loadBlocking(String imagePath) {
+        Bitmap bitmap = memoryCache.get(imagePath);
+        if (bitmap != null) {
+            return bitmap;
+        }
+
+        File file = thumbnailFile(imagePath);
+        if (file.exists()) {
+            bitmap = BitmapFactory.decodeFile(file.getAbsolutePath());
+            if (bitmap != null) {
+                memoryCache.put(imagePath, bitmap);
+                return bitmap;
+            }
+        }
+
+        return generate(imagePath);
+    }
+
+    public void remove(String imagePath) {
+        memoryCache.remove(imagePath);
+        thumbnailFile(imagePath).delete();
+    }
+
+    private File thumbnailFile(String imagePath) {
+        return new File(directory, new File(imagePath).getName());
+    }
+
+    public void close() {
+        executor.shutdownNow();
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+}
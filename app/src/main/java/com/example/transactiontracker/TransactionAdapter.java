@@ -1,36 +1,62 @@
 package com.example.transactiontracker;
 
-import android.graphics.Color;
+import android.graphics.Bitmap;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageButton;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Future;
 
 public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.TransactionViewHolder> {
-    private List<Transaction> transactions;
+    private static final DiffUtil.ItemCallback<TransactionDisplayModel> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<TransactionDisplayModel>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull TransactionDisplayModel oldModel, @NonNull TransactionDisplayModel newModel) {
+            return oldModel.getId() == newModel.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull TransactionDisplayModel oldModel, @NonNull TransactionDisplayModel newModel) {
+            Transaction oldItem = oldModel.getTransaction();
+            Transaction newItem = newModel.getTransaction();
+            return oldItem.getAmount() == newItem.getAmount()
+                    && Objects.equals(oldItem.getDescription(), newItem.getDescription())
+                    && Objects.equals(oldItem.getCategory(), newItem.getCategory())
+                    && oldItem.getDateMillis() == newItem.getDateMillis()
+                    && Objects.equals(oldItem.getImagePaths(), newItem.getImagePaths())
+                    && Objects.equals(oldModel.getBalanceText(), newModel.getBalanceText());
+        }
+    };
+
+    // Diffs run on a background thread and dispatch only the minimal item notifications
+    private final AsyncListDiffer<TransactionDisplayModel> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    // The most recently submitted list, which may still be diffing
+    private List<TransactionDisplayModel> latestList;
     private OnTransactionClickListener listener;
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy HH:mm", Locale.getDefault());
-    private NumberFormat currencyFormat;
+    private final ThumbnailCache thumbnailCache;
 
     public interface OnTransactionClickListener {
         void onDeleteClick(Transaction transaction);
         void onItemClick(Transaction transaction);
     }
 
-    public TransactionAdapter(List<Transaction> transactions, OnTransactionClickListener listener) {
-        this.transactions = transactions;
+    public TransactionAdapter(List<TransactionDisplayModel> transactions, OnTransactionClickListener listener,
+                              ThumbnailCache thumbnailCache) {
         this.listener = listener;
-        this.currencyFormat = NumberFormat.getCurrencyInstance(new Locale("he", "IL"));
-        this.currencyFormat.setCurrency(java.util.Currency.getInstance("ILS"));
+        this.thumbnailCache = thumbnailCache;
+        setHasStableIds(true);
+        updateTransactions(transactions);
     }
 
     @NonNull
@@ -38,56 +64,120 @@ public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.
     public TransactionViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_transaction, parent, false);
-        return new TransactionViewHolder(view);
+        TransactionViewHolder holder = new TransactionViewHolder(view);
+
+        // Listeners are set once per holder and look up the row when clicked
+        holder.deleteButton.setOnClickListener(v -> {
+            Transaction transaction = transactionAt(holder);
+            if (listener != null && transaction != null) {
+                listener.onDeleteClick(transaction);
+            }
+        });
+
+        holder.itemView.setOnClickListener(v -> {
+            Transaction transaction = transactionAt(holder);
+            if (listener != null && transaction != null) {
+                listener.onItemClick(transaction);
+            }
+        });
+        return holder;
     }
 
+    // Everything shown here was formatted when the page loaded, so binding only assigns values
     @Override
     public void onBindViewHolder(@NonNull TransactionViewHolder holder, int position) {
-        Transaction transaction = transactions.get(position);
-
-        holder.descriptionText.setText(transaction.getDescription());
-        holder.categoryText.setText(transaction.getCategory());
-        holder.dateText.setText(dateFormat.format(transaction.getDate()));
+        TransactionDisplayModel model = differ.getCurrentList().get(position);
 
-        String amountText = currencyFormat.format(Math.abs(transaction.getAmount()));
-        holder.amountText.setText(amountText);
+        holder.descriptionText.setText(model.getDescription());
+        holder.categoryText.setText(model.getCategory());
+        holder.dateText.setText(model.getDateText());
+        holder.amountText.setText(model.getAmountText());
+        holder.amountText.setTextColor(model.getAmountColor());
 
-        // Set color based on transaction type
-        if (transaction.isExpense()) {
-            holder.amountText.setTextColor(Color.parseColor("#F44336")); // Red for expenses
+        if (model.getBalanceText() != null) {
+            holder.balanceText.setVisibility(View.VISIBLE);
+            holder.balanceText.setText(model.getBalanceText());
         } else {
-            holder.amountText.setTextColor(Color.parseColor("#4CAF50")); // Green for income
+            holder.balanceText.setVisibility(View.GONE);
         }
 
         // Show image indicator if transaction has images
-        if (transaction.getImagePaths() != null && !transaction.getImagePaths().isEmpty()) {
+        if (model.getImageIndicatorText() != null) {
             holder.imageIndicator.setVisibility(View.VISIBLE);
-            holder.imageIndicator.setText("📷 " + transaction.getImagePaths().size());
+            holder.imageIndicator.setText(model.getImageIndicatorText());
+            bindThumbnail(holder, model.getThumbnailPath());
         } else {
             holder.imageIndicator.setVisibility(View.GONE);
+            clearThumbnail(holder);
         }
+    }
 
-        holder.deleteButton.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onDeleteClick(transaction);
-            }
-        });
+    private Transaction transactionAt(TransactionViewHolder holder) {
+        int position = holder.getBindingAdapterPosition();
+        if (position == RecyclerView.NO_POSITION) {
+            return null;
+        }
+        return differ.getCurrentList().get(position).getTransaction();
+    }
 
-        holder.itemView.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onItemClick(transaction);
+    private void bindThumbnail(TransactionViewHolder holder, String imagePath) {
+        if (imagePath.equals(holder.thumbnailPath)) {
+            return; // Already showing or loading this thumbnail
+        }
+        clearThumbnail(holder);
+        holder.thumbnailPath = imagePath;
+        holder.thumbnail.setVisibility(View.VISIBLE);
+
+        Bitmap cached = thumbnailCache.getFromMemory(imagePath);
+        if (cached != null) {
+            holder.thumbnail.setImageBitmap(cached);
+            return;
+        }
+
+        holder.thumbnailLoad = thumbnailCache.load(imagePath, bitmap -> {
+            // The holder may have been rebound to another row while loading
+            if (imagePath.equals(holder.thumbnailPath)) {
+                holder.thumbnail.setImageBitmap(bitmap);
+                holder.thumbnailLoad = null;
             }
         });
     }
 
+    private void clearThumbnail(TransactionViewHolder holder) {
+        if (holder.thumbnailLoad != null) {
+            holder.thumbnailLoad.cancel(true);
+            holder.thumbnailLoad = null;
+        }
+        holder.thumbnailPath = null;
+        holder.thumbnail.setImageDrawable(null);
+        holder.thumbnail.setVisibility(View.GONE);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull TransactionViewHolder holder) {
+        clearThumbnail(holder);
+    }
+
     @Override
     public int getItemCount() {
-        return transactions.size();
+        return differ.getCurrentList().size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).getId();
+    }
+
+    public void updateTransactions(List<TransactionDisplayModel> newTransactions) {
+        latestList = newTransactions;
+        differ.submitList(newTransactions);
     }
 
-    public void updateTransactions(List<Transaction> newTransactions) {
-        this.transactions = newTransactions;
-        notifyDataSetChanged();
+    public void appendTransactions(List<TransactionDisplayModel> page) {
+        // Build on the latest submitted list so back-to-back appends don't drop a page
+        List<TransactionDisplayModel> combined = new ArrayList<>(latestList);
+        combined.addAll(page);
+        updateTransactions(combined);
     }
 
     static class TransactionViewHolder extends RecyclerView.ViewHolder {
@@ -95,8 +185,12 @@ public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.
         TextView categoryText;
         TextView amountText;
         TextView dateText;
+        TextView balanceText;
         TextView imageIndicator;
+        ImageView thumbnail;
         ImageButton deleteButton;
+        String thumbnailPath;
+        Future<?> thumbnailLoad;
 
         public TransactionViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -104,7 +198,9 @@ public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.
             categoryText = itemView.findViewById(R.id.categoryText);
             amountText = itemView.findViewById(R.id.amountText);
             dateText = itemView.findViewById(R.id.dateText);
+            balanceText = itemView.findViewById(R.id.balanceText);
             imageIndicator = itemView.findViewById(R.id.imageIndicator);
+            thumbnail = itemView.findViewById(R.id.receiptThumbnail);
             deleteButton = itemView.findViewById(R.id.deleteButton);
         }
     }
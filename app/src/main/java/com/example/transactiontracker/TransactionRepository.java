@@ -0,0 +1,562 @@
+package com.example.transactiontracker;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+import android.util.Log;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs all DatabaseHelper work on a dedicated background thread and delivers results on the
+// main thread. Reads are keyed: a new request for the same key cancels the previous one if it
+// hasn't started yet, and drops its result if it has. A read that fails delivers null and a
+// write reports false, so a database error never escapes onto a background thread.
+public class TransactionRepository {
+    private static final String TAG = "TransactionRepository";
+    public static final int PAGE_SIZE = 50;
+    public static final int SEARCH_LIMIT = 200;
+    private static final int MIGRATION_CHUNK_SIZE = 500;
+    // Waits for a pause in typing before querying
+    private static final long SEARCH_DEBOUNCE_MS = 250;
+
+    private static final String KEY_MONTH = "month";
+    private static final String KEY_PAGE = "page";
+    private static final String KEY_CATEGORY_BREAKDOWN = "category_breakdown";
+    private static final String KEY_SEARCH = "search";
+    private static final String KEY_REPORT = "report";
+    private static final String KEY_PREFETCH_PREVIOUS = "prefetch_previous";
+    private static final String KEY_PREFETCH_NEXT = "prefetch_next";
+    // Months kept for instant navigation, each holding its summary, first page and snapshot
+    private static final int CACHED_MONTHS = 12;
+
+    // Whole screen loads as seen by QueryMetrics, each with the number of queries it should
+    // need: the first page's rows and images, the running balance of its first row, the row
+    // count and rows of the month's columnar snapshot, and a first-time category dictionary load
+    private static final String OP_SCREEN_MONTH = "screen.month";
+    private static final String OP_SCREEN_PAGE = "screen.page";
+    private static final String OP_SCREEN_RELOAD = "screen.reload";
+    private static final String OP_SCREEN_SEARCH = "screen.search";
+    private static final String OP_PREFETCH_MONTH = "prefetch.month";
+    private static final int MONTH_QUERY_BUDGET = 6;
+    private static final int PAGE_QUERY_BUDGET = 4;
+    // A month load plus the rows and images of the check for rows past the reloaded ones
+    private static final int RELOAD_QUERY_BUDGET = 8;
+    private static final int SEARCH_QUERY_BUDGET = 3;
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private final DatabaseHelper dbHelper;
+    // Only used on the database thread
+    private final TransactionFormatter formatter;
+    private final ExecutorService executor;
+    // Imports and exports run on their own thread so month loads aren't queued behind them
+    private final ExecutorService bulkExecutor;
+    // Image decoding and file writes, kept off the database thread. Orphan sweeps run here too,
+    // so a file can't be reused by an ingest while it's being swept.
+    private final ExecutorService imageExecutor;
+    private final ImageIngestor imageIngestor;
+    private final ImageSweeper imageSweeper;
+    private final StartupSnapshot startupSnapshot;
+    private final MonthCache monthCache = new MonthCache(CACHED_MONTHS);
+    // Only used on the database thread; what the snapshot file currently holds
+    private byte[] writtenSnapshot;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Only touched on the main thread
+    private final Map<String, Future<?>> pendingRequests = new HashMap<>();
+    private final Map<String, Integer> requestGenerations = new HashMap<>();
+    private Runnable pendingSearch;
+    private CancellationSignal searchCancellation;
+    // The snapshot drawn at launch, until the first month load has checked it
+    private byte[] shownSnapshot;
+    // Read by the bulk thread to stop migrating once the activity is gone
+    private volatile boolean closed;
+
+    public TransactionRepository(DatabaseHelper dbHelper, TransactionFormatter formatter,
+                                 ImageIngestor imageIngestor, ImageSweeper imageSweeper,
+                                 StartupSnapshot startupSnapshot) {
+        this.dbHelper = dbHelper;
+        this.formatter = formatter;
+        this.imageIngestor = imageIngestor;
+        this.imageSweeper = imageSweeper;
+        this.startupSnapshot = startupSnapshot;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transaction-db");
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        this.bulkExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transaction-bulk");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.imageExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transaction-images");
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+
+        QueryMetrics metrics = dbHelper.getMetrics();
+        metrics.setBudget(OP_SCREEN_MONTH, MONTH_QUERY_BUDGET);
+        metrics.setBudget(OP_SCREEN_PAGE, PAGE_QUERY_BUDGET);
+        metrics.setBudget(OP_SCREEN_RELOAD, RELOAD_QUERY_BUDGET);
+        metrics.setBudget(OP_SCREEN_SEARCH, SEARCH_QUERY_BUDGET);
+        metrics.setBudget(OP_PREFETCH_MONTH, MONTH_QUERY_BUDGET);
+
+        // Writes drop exactly the cached months they touched
+        dbHelper.setMonthChangeListener(monthCache::invalidate);
+    }
+
+    // Reads the month saved by the last session without touching the database, so it can be
+    // drawn on launch. Returns null unless a readable snapshot of the given month exists.
+    public MonthData readStartupSnapshot(MonthRange range) {
+        byte[] data = startupSnapshot.read();
+        if (data == null) {
+            return null;
+        }
+        // Decoded on the main thread, so it can't share the database thread's formatter
+        MonthData month = StartupSnapshot.decode(data, new TransactionFormatter());
+        if (month == null || month.getRange().getYearMonth() != range.getYearMonth()) {
+            return null;
+        }
+        shownSnapshot = data;
+        return month;
+    }
+
+    // Loads the month's summary and its first page of transactions, formatted for display. The
+    // current month is also saved as the startup snapshot. Months still in the cache are delivered immediately.
+    // A month exactly as drawn from the snapshot at launch is marked unchanged; null means the
+    // load failed.
+    public void loadMonth(MonthRange range, Callback<MonthData> callback) {
+        cancel(KEY_PAGE);
+        cancel(KEY_PREFETCH_PREVIOUS);
+        cancel(KEY_PREFETCH_NEXT);
+        byte[] shown = shownSnapshot;
+        shownSnapshot = null;
+
+        MonthData cached = shown == null ? monthCache.get(range) : null;
+        if (cached != null) {
+            cancel(KEY_MONTH);
+            callback.onResult(cached);
+            executor.execute(() -> saveSnapshot(cached));
+            prefetchNeighbors(range);
+            return;
+        }
+
+        submitLatest(KEY_MONTH, () -> {
+            // A prefetch queued ahead of this load may already have read the month
+            MonthData month = monthCache.get(range);
+            if (month == null) {
+                month = queryMonth(OP_SCREEN_MONTH, range);
+            }
+            if (shown != null) {
+                writtenSnapshot = shown;
+            }
+            byte[] saved = saveSnapshot(month);
+            return saved != null && Arrays.equals(saved, shown) ? month.asUnchanged() : month;
+        }, month -> {
+            callback.onResult(month);
+            prefetchNeighbors(range);
+        });
+    }
+
+    // Reloads a month after a write. Rows down to the given last loaded one are read again, so
+    // a list within its first page keeps its length and only rows that changed are redrawn.
+    // At most one page is read: a longer list is cut back to its first page and paging resumes
+    // from there. The page goes to the cache and, for the current month, the startup snapshot.
+    public void reloadMonth(MonthRange range, Transaction through, Callback<MonthData> callback) {
+        if (through == null) {
+            loadMonth(range, callback);
+            return;
+        }
+        cancel(KEY_PAGE);
+        shownSnapshot = null;
+
+        submitLatest(KEY_MONTH, () -> {
+            long cacheVersion = monthCache.getVersion();
+            QueryMetrics metrics = dbHelper.getMetrics();
+            QueryMetrics.Operation operation = metrics.begin(OP_SCREEN_RELOAD);
+            List<Transaction> rows = new ArrayList<>();
+            try {
+                rows = dbHelper.getTransactionsThrough(range.getStart(), range.getEnd(), through, PAGE_SIZE);
+                boolean hasMore = !rows.isEmpty() && !dbHelper.getTransactionsPage(range.getStart(), range.getEnd(),
+                        rows.get(rows.size() - 1), 1).isEmpty();
+                MonthSnapshot snapshot = dbHelper.getMonthSnapshot(range);
+                MonthData month = new MonthData(range, snapshot.toSummary(), formatWithBalances(rows), hasMore,
+                        snapshot);
+                monthCache.put(month, cacheVersion);
+                saveSnapshot(month);
+                return month;
+            } finally {
+                metrics.end(operation, rows.size());
+            }
+        }, callback);
+    }
+
+    // Reads the months either side of the one on screen into the cache, so stepping to them
+    // doesn't wait for the database
+    private void prefetchNeighbors(MonthRange range) {
+        prefetch(KEY_PREFETCH_PREVIOUS, MonthRange.containing(range.getStart() - 1));
+        prefetch(KEY_PREFETCH_NEXT, MonthRange.containing(range.getEnd()));
+    }
+
+    private void prefetch(String key, MonthRange range) {
+        if (monthCache.contains(range)) {
+            return;
+        }
+        submitLatest(key, () -> monthCache.contains(range) ? null : queryMonth(OP_PREFETCH_MONTH, range),
+                month -> { });
+    }
+
+    // Only called on the database thread
+    private MonthData queryMonth(String operationName, MonthRange range) {
+        long cacheVersion = monthCache.getVersion();
+        QueryMetrics metrics = dbHelper.getMetrics();
+        QueryMetrics.Operation operation = metrics.begin(operationName);
+        List<Transaction> firstPage = new ArrayList<>();
+        try {
+            firstPage = dbHelper.getTransactionsPage(range.getStart(), range.getEnd(), null, PAGE_SIZE);
+            // Totals are summed from the snapshot's columns, which stay cached with the month
+            MonthSnapshot snapshot = dbHelper.getMonthSnapshot(range);
+            MonthData month = new MonthData(range, snapshot.toSummary(), formatWithBalances(firstPage),
+                    firstPage.size() == PAGE_SIZE, snapshot);
+            monthCache.put(month, cacheVersion);
+            return month;
+        } finally {
+            metrics.end(operation, firstPage.size());
+        }
+    }
+
+    // Only called on the database thread. One balance lookup for the newest row of the page;
+    // the rest follow from the amounts.
+    private List<TransactionDisplayModel> formatWithBalances(List<Transaction> page) {
+        if (page.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return formatter.formatWithBalances(page, dbHelper.getBalanceThrough(page.get(0)));
+    }
+
+    // Only called on the database thread. Writes the month as the startup snapshot unless the
+    // file already holds it, and returns its encoding. Launches always open on the current
+    // month, so any other month is left out and null is returned.
+    private byte[] saveSnapshot(MonthData month) {
+        if (month.getRange().getYearMonth() != MonthRange.containing(System.currentTimeMillis()).getYearMonth()) {
+            return null;
+        }
+        List<Transaction> firstPage = new ArrayList<>(month.getTransactions().size());
+        for (TransactionDisplayModel row : month.getTransactions()) {
+            firstPage.add(row.getTransaction());
+        }
+        long newestBalance = firstPage.isEmpty() ? 0 : month.getTransactions().get(0).getBalance();
+        byte[] snapshot = StartupSnapshot.encode(month.getRange(), month.getSummary(), firstPage, newestBalance,
+                month.hasMore());
+        if (!Arrays.equals(snapshot, writtenSnapshot)) {
+            startupSnapshot.write(snapshot);
+            writtenSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    // Loads the page that follows the given transaction; an empty or short page means the
+    // end of the month was reached
+    public void loadPage(MonthRange range, Transaction after, Callback<List<TransactionDisplayModel>> callback) {
+        submitLatest(KEY_PAGE, () -> {
+            QueryMetrics metrics = dbHelper.getMetrics();
+            QueryMetrics.Operation operation = metrics.begin(OP_SCREEN_PAGE);
+            List<TransactionDisplayModel> page = new ArrayList<>();
+            try {
+                page = formatWithBalances(dbHelper.getTransactionsPage(
+                        range.getStart(), range.getEnd(), after, PAGE_SIZE));
+                return page;
+            } finally {
+                metrics.end(operation, page.size());
+            }
+        }, callback);
+    }
+
+    // Per-category totals for the month, largest spend first, summed from its columnar
+    // snapshot. Cached months already hold one, so only uncached months are read.
+    public void loadCategoryBreakdown(MonthRange range, Callback<List<CategoryTotal>> callback) {
+        submitLatest(KEY_CATEGORY_BREAKDOWN, () -> {
+            MonthData cached = monthCache.get(range);
+            MonthSnapshot snapshot = cached != null ? cached.getSnapshot() : dbHelper.getMonthSnapshot(range);
+            return snapshot.getCategoryTotals();
+        }, callback);
+    }
+
+    // Income and expenses over [start, end) per day, week, month or year, optionally per
+    // category within each bucket
+    public void loadReport(long start, long end, ReportGranularity granularity, boolean byCategory,
+                           Callback<Report> callback) {
+        submitLatest(KEY_REPORT, () -> dbHelper.getReport(start, end, granularity, byCategory), callback);
+    }
+
+    // Searches descriptions and categories by word prefix once typing pauses. Each call
+    // supersedes the previous one: a query that hasn't started is dropped and one that's
+    // running is interrupted, so only the latest text ever reaches the callback.
+    public void search(String query, Callback<List<TransactionDisplayModel>> callback) {
+        cancelSearch();
+        pendingSearch = () -> {
+            pendingSearch = null;
+            CancellationSignal cancellationSignal = new CancellationSignal();
+            searchCancellation = cancellationSignal;
+            submitLatest(KEY_SEARCH, () -> {
+                QueryMetrics metrics = dbHelper.getMetrics();
+                QueryMetrics.Operation operation = metrics.begin(OP_SCREEN_SEARCH);
+                List<TransactionDisplayModel> results = new ArrayList<>();
+                try {
+                    results = formatter.formatAll(
+                            dbHelper.searchTransactions(query, SEARCH_LIMIT, cancellationSignal));
+                    return results;
+                } catch (OperationCanceledException e) {
+                    return null; // Superseded, the result is dropped anyway
+                } finally {
+                    metrics.end(operation, results.size());
+                }
+            }, callback);
+        };
+        mainHandler.postDelayed(pendingSearch, SEARCH_DEBOUNCE_MS);
+    }
+
+    public void cancelSearch() {
+        if (pendingSearch != null) {
+            mainHandler.removeCallbacks(pendingSearch);
+            pendingSearch = null;
+        }
+        if (searchCancellation != null) {
+            searchCancellation.cancel();
+            searchCancellation = null;
+        }
+        cancel(KEY_SEARCH);
+    }
+
+    // onComplete receives whether the transaction was stored
+    public void addTransaction(Transaction transaction, Callback<Boolean> onComplete) {
+        submit(() -> dbHelper.addTransaction(transaction) != -1,
+                added -> onComplete.onResult(added != null && added));
+    }
+
+    // Stores the picked images first and only inserts the transaction once every file has
+    // been written, so the database never references a missing image
+    public void addTransaction(Transaction transaction, List<Uri> images, Callback<Boolean> onComplete) {
+        if (images.isEmpty()) {
+            addTransaction(transaction, onComplete);
+            return;
+        }
+        List<Uri> imagesCopy = new ArrayList<>(images);
+        imageExecutor.execute(() -> {
+            for (Uri imageUri : imagesCopy) {
+                String savedPath = imageIngestor.ingest(imageUri);
+                if (savedPath != null) {
+                    transaction.addImagePath(savedPath);
+                }
+            }
+            // Straight to the database thread, which close() keeps open until this thread is done
+            addTransaction(transaction, onComplete);
+        });
+    }
+
+    // onComplete receives whether the transaction was deleted
+    public void deleteTransaction(Transaction transaction, Callback<Boolean> onComplete) {
+        submit(() -> {
+            dbHelper.deleteTransaction(transaction.getId());
+            return true;
+        }, deleted -> {
+            onComplete.onResult(deleted != null);
+            if (deleted != null && !transaction.getImagePaths().isEmpty()) {
+                sweepOrphanImages();
+            }
+        });
+    }
+
+    // Works through pending background migration jobs one chunk at a time on the bulk thread.
+    // Progress is posted after every chunk. onFinished runs if any work was attempted, with
+    // true once every job is done or false if a chunk failed; a failed job is retried from its
+    // last finished chunk on the next launch. Orphaned images are only swept after all jobs
+    // have finished, since uncopied legacy rows still reference their files.
+    public void runPendingMigrations(Callback<MigrationProgress> progress, Callback<Boolean> onFinished) {
+        bulkExecutor.execute(() -> {
+            boolean migrated = false;
+            boolean failed = false;
+            try {
+                while (!closed && dbHelper.runMigrationChunk(MIGRATION_CHUNK_SIZE)) {
+                    migrated = true;
+                    MigrationProgress current = dbHelper.getMigrationProgress();
+                    mainHandler.post(() -> {
+                        if (!closed) {
+                            progress.onResult(current);
+                        }
+                    });
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Migration chunk failed", e);
+                failed = true;
+            }
+
+            if (migrated) {
+                dbHelper.checkpoint();
+            }
+            if (!failed) {
+                mainHandler.post(() -> {
+                    if (!closed) {
+                        sweepOrphanImages();
+                    }
+                });
+            }
+            if (migrated || failed) {
+                boolean succeeded = !failed;
+                mainHandler.post(() -> {
+                    if (!closed) {
+                        onFinished.onResult(succeeded);
+                    }
+                });
+            }
+        });
+    }
+
+    // Deletes image files no transaction references any more, in the background
+    public void sweepOrphanImages() {
+        imageExecutor.execute(imageSweeper::sweep);
+    }
+
+    // onComplete receives whether the transaction was updated
+    public void updateTransaction(Transaction transaction, Callback<Boolean> onComplete) {
+        submit(() -> dbHelper.updateTransaction(transaction) > 0,
+                updated -> onComplete.onResult(updated != null && updated));
+    }
+
+    // Streams a CSV or OFX statement into the database. Progress and the result are delivered
+    // on the main thread; the result is null if the file couldn't be read or parsed.
+    public void importStatement(ContentResolver resolver, Uri uri, String defaultCategory,
+                                StatementImporter.ProgressListener progress,
+                                Callback<StatementImporter.Result> callback) {
+        bulkExecutor.execute(() -> {
+            StatementImporter importer = new StatementImporter(dbHelper, defaultCategory,
+                    (rowsRead, imported) -> mainHandler.post(() -> {
+                        if (!closed) {
+                            progress.onProgress(rowsRead, imported);
+                        }
+                    }));
+
+            StatementImporter.Result result;
+            try (InputStream input = resolver.openInputStream(uri)) {
+                result = input != null ? importer.importStatement(input) : null;
+            } catch (Exception e) {
+                Log.e(TAG, "Statement import failed", e);
+                result = null;
+            }
+            dbHelper.checkpoint();
+
+            StatementImporter.Result finalResult = result;
+            mainHandler.post(() -> {
+                if (!closed) {
+                    callback.onResult(finalResult);
+                }
+            });
+        });
+    }
+
+    // Streams the whole ledger to the given document. The result is the number of rows
+    // written, or null if the export failed.
+    public void exportLedger(ContentResolver resolver, Uri uri, LedgerExporter.Format format, boolean gzip,
+                             Callback<Integer> callback) {
+        bulkExecutor.execute(() -> {
+            Integer rowCount;
+            try (OutputStream output = resolver.openOutputStream(uri)) {
+                rowCount = output != null ? new LedgerExporter(dbHelper).export(output, format, gzip) : null;
+            } catch (Exception e) {
+                Log.e(TAG, "Ledger export failed", e);
+                rowCount = null;
+            }
+
+            Integer finalRowCount = rowCount;
+            mainHandler.post(() -> {
+                if (!closed) {
+                    callback.onResult(finalRowCount);
+                }
+            });
+        });
+    }
+
+    // Drops reads that haven't started, but lets queued writes, imports and image files finish
+    // so nothing the user saved is lost. Migrations stop after their current chunk.
+    public void close() {
+        closed = true;
+        cancelSearch();
+        for (Future<?> request : pendingRequests.values()) {
+            request.cancel(false);
+        }
+        pendingRequests.clear();
+        // The image thread hands its inserts to the database thread, so that one stops last
+        imageExecutor.execute(executor::shutdown);
+        imageExecutor.shutdown();
+        bulkExecutor.shutdown();
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
+    private <T> void submit(Callable<T> task, Callback<T> callback) {
+        executor.execute(() -> {
+            T result = call(task);
+            mainHandler.post(() -> {
+                if (!closed) {
+                    callback.onResult(result);
+                }
+            });
+        });
+    }
+
+    private <T> void submitLatest(String key, Callable<T> task, Callback<T> callback) {
+        int generation = cancel(key);
+
+        Future<?> future = executor.submit(() -> {
+            T result = call(task);
+            mainHandler.post(() -> {
+                Integer current = requestGenerations.get(key);
+                if (closed || current == null || current != generation) {
+                    return; // A newer request superseded this one
+                }
+                pendingRequests.remove(key);
+                callback.onResult(result);
+            });
+        });
+        pendingRequests.put(key, future);
+    }
+
+    // Cancels any pending request for the key and returns the key's new generation
+    private int cancel(String key) {
+        Future<?> previous = pendingRequests.remove(key);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+
+        Integer lastGeneration = requestGenerations.get(key);
+        int generation = lastGeneration == null ? 1 : lastGeneration + 1;
+        requestGenerations.put(key, generation);
+        return generation;
+    }
+
+    // Returns null if the task failed
+    private static <T> T call(Callable<T> task) {
+        try {
+            return task.call();
+        } catch (Exception e) {
+            Log.e(TAG, "Database task failed", e);
+            return null;
+        }
+    }
+}
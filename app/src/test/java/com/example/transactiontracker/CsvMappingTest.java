@@ -0,0 +1,117 @@
+package com.example.transactiontracker;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CsvMappingTest {
+    @Test
+    public void parseAmount_plainAndSigned() {
+        assertEquals(Long.valueOf(1250), CsvMapping.parseAmount("12.50"));
+        assertEquals(Long.valueOf(-1250), CsvMapping.parseAmount("-12.50"));
+        assertEquals(Long.valueOf(-1250), CsvMapping.parseAmount("12.50-"));
+        assertEquals(Long.valueOf(-1250), CsvMapping.parseAmount("(12.50)"));
+        assertEquals(Long.valueOf(1250), CsvMapping.parseAmount("₪ 12.50"));
+    }
+
+    @Test
+    public void parseAmount_groupingAndDecimalSeparators() {
+        assertEquals(Long.valueOf(123456), CsvMapping.parseAmount("1,234.56"));
+        assertEquals(Long.valueOf(123456), CsvMapping.parseAmount("1.234,56"));
+        assertEquals(Long.valueOf(123456789), CsvMapping.parseAmount("1.234.567,89"));
+        assertEquals(Long.valueOf(1250), CsvMapping.parseAmount("12,50"));
+        assertEquals(Long.valueOf(123400), CsvMapping.parseAmount("1,234"));
+        assertEquals(Long.valueOf(123456700), CsvMapping.parseAmount("1.234.567"));
+    }
+
+    @Test
+    public void parseAmount_commaWithOneOrTwoDigitsIsDecimal() {
+        assertEquals(Long.valueOf(150), CsvMapping.parseAmount("1,5"));
+        assertEquals(Long.valueOf(123), CsvMapping.parseAmount("1,23"));
+        assertEquals(Long.valueOf(-1250), CsvMapping.parseAmount("12,5-"));
+    }
+
+    @Test
+    public void parseAmount_rejectsMoreThanTwoDecimals() {
+        assertNull(CsvMapping.parseAmount("1.234"));
+        assertNull(CsvMapping.parseAmount("0.125"));
+        assertNull(CsvMapping.parseAmount("1,234.567"));
+        assertNull(CsvMapping.parseAmount("1.234,567"));
+    }
+
+    @Test
+    public void parseAmount_notANumber() {
+        assertNull(CsvMapping.parseAmount(null));
+        assertNull(CsvMapping.parseAmount(""));
+        assertNull(CsvMapping.parseAmount("   "));
+        assertNull(CsvMapping.parseAmount("total"));
+    }
+
+    @Test
+    public void parseDate_detectsOneFormatFromTheSample() {
+        CsvMapping mapping = mappingWithDateColumn();
+        // The second row is only valid month first, so the whole file is read that way
+        mapping.detectDateFormat(Arrays.asList(row("01/02/2024"), row("01/13/2024"), row("Total")));
+
+        assertDate(2024, Calendar.JANUARY, 2, mapping.parseDate("01/02/2024"));
+        assertNull(mapping.parseDate("13/01/2024"));
+    }
+
+    @Test
+    public void parseDate_ambiguousSampleReadsDayFirst() {
+        CsvMapping mapping = mappingWithDateColumn();
+        mapping.detectDateFormat(Arrays.asList(row("01/02/2024"), row("03/04/2024")));
+
+        assertDate(2024, Calendar.FEBRUARY, 1, mapping.parseDate("01/02/2024"));
+        assertDate(2024, Calendar.JANUARY, 13, mapping.parseDate("13/01/2024"));
+    }
+
+    @Test
+    public void parseDate_withoutSampleTheFirstDateFixesTheFormat() {
+        CsvMapping mapping = mappingWithDateColumn();
+
+        assertDate(2024, Calendar.MARCH, 5, mapping.parseDate("2024-03-05"));
+        assertNull(mapping.parseDate("05/03/2024"));
+    }
+
+    @Test
+    public void fromHeader_needsDateAndAmountColumns() {
+        assertNull(CsvMapping.fromHeader(Arrays.asList("Description", "Amount"), "Other"));
+        assertNotNull(CsvMapping.fromHeader(Arrays.asList("\uFEFFDate", "Debit", "Credit"), "Other"));
+    }
+
+    @Test
+    public void toTransaction_debitAndCreditColumns() {
+        CsvMapping mapping = CsvMapping.fromHeader(Arrays.asList("תאריך", "תיאור", "חובה", "זכות"), "Other");
+        Transaction transaction = mapping.toTransaction(Arrays.asList("05/03/2024", " Coffee ", "12.50", ""));
+
+        assertNotNull(transaction);
+        assertEquals(-1250, transaction.getAmount());
+        assertEquals("Coffee", transaction.getDescription());
+        assertEquals("Other", transaction.getCategory());
+    }
+
+    private static CsvMapping mappingWithDateColumn() {
+        return CsvMapping.fromHeader(Arrays.asList("Date", "Amount"), "Other");
+    }
+
+    private static List<String> row(String date) {
+        return Arrays.asList(date, "1.00");
+    }
+
+    private static void assertDate(int year, int month, int day, Date date) {
+        assertNotNull(date);
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        assertEquals(year, calendar.get(Calendar.YEAR));
+        assertEquals(month, calendar.get(Calendar.MONTH));
+        assertEquals(day, calendar.get(Calendar.DAY_OF_MONTH));
+    }
+}
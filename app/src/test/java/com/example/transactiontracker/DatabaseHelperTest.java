@@ -0,0 +1,26 @@
+package com.example.transactiontracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DatabaseHelperTest {
+    @Test
+    public void toPrefixMatch_quotesEveryWordAsAPrefix() {
+        assertEquals("\"sup*\" \"foo*\"", DatabaseHelper.toPrefixMatch("sup foo"));
+        assertEquals("\"קפה*\"", DatabaseHelper.toPrefixMatch("  קפה  "));
+    }
+
+    @Test
+    public void toPrefixMatch_dropsQuerySyntax() {
+        assertEquals("\"a*\" \"b*\"", DatabaseHelper.toPrefixMatch("a\"b"));
+        assertEquals("\"NEAR*\" \"x*\"", DatabaseHelper.toPrefixMatch("NEAR(x*)"));
+    }
+
+    @Test
+    public void toPrefixMatch_nothingSearchable() {
+        assertNull(DatabaseHelper.toPrefixMatch(""));
+        assertNull(DatabaseHelper.toPrefixMatch("*\"-()"));
+    }
+}
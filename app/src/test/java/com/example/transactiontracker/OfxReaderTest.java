@@ -0,0 +1,60 @@
+package com.example.transactiontracker;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class OfxReaderTest {
+    @Test
+    public void readsSgmlLeafTags() throws IOException {
+        OfxReader reader = new OfxReader(new StringReader("OFXHEADER:100\n<OFX><BANKTRANLIST>\n"
+                + "<STMTTRN>\n<TRNTYPE>DEBIT\n<DTPOSTED>20250314120000.000[-5:EST]\n<TRNAMT>-42.10\n"
+                + "<NAME>Grocer &amp; Sons\n</STMTTRN>\n"
+                + "</BANKTRANLIST></OFX>"), "Other");
+
+        Transaction transaction = reader.readTransaction();
+        assertNotNull(transaction);
+        assertEquals(-4210, transaction.getAmount());
+        assertEquals("Grocer & Sons", transaction.getDescription());
+        assertEquals("Other", transaction.getCategory());
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(transaction.getDate());
+        assertEquals(2025, calendar.get(Calendar.YEAR));
+        assertEquals(Calendar.MARCH, calendar.get(Calendar.MONTH));
+        assertEquals(14, calendar.get(Calendar.DAY_OF_MONTH));
+
+        assertNull(reader.readTransaction());
+        assertEquals(0, reader.getInvalidCount());
+    }
+
+    @Test
+    public void readsXmlAndFallsBackToMemo() throws IOException {
+        OfxReader reader = new OfxReader(new StringReader("<OFX><STMTTRN><DTPOSTED>20250101</DTPOSTED>"
+                + "<TRNAMT>1000</TRNAMT><MEMO>Salary</MEMO></STMTTRN></OFX>"), "Other");
+
+        Transaction transaction = reader.readTransaction();
+        assertNotNull(transaction);
+        assertEquals(100000, transaction.getAmount());
+        assertEquals("Salary", transaction.getDescription());
+    }
+
+    @Test
+    public void skipsAndCountsTransactionsWithoutAmount() throws IOException {
+        OfxReader reader = new OfxReader(new StringReader("<OFX>"
+                + "<STMTTRN><DTPOSTED>20250101<NAME>Broken</STMTTRN>"
+                + "<STMTTRN><DTPOSTED>20250102<TRNAMT>5<NAME>Kept</STMTTRN></OFX>"), "Other");
+
+        Transaction transaction = reader.readTransaction();
+        assertNotNull(transaction);
+        assertEquals("Kept", transaction.getDescription());
+        assertNull(reader.readTransaction());
+        assertEquals(1, reader.getInvalidCount());
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.transactiontracker;
+
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class StatementImporterTest {
+    @Test
+    public void detectCharset_utf8ByteOrderMarkIsSkipped() throws IOException {
+        byte[] data = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'D', 'a', 't', 'e'};
+        BufferedInputStream input = new BufferedInputStream(new ByteArrayInputStream(data));
+
+        assertEquals(StandardCharsets.UTF_8, StatementImporter.detectCharset(input));
+        assertEquals('D', input.read());
+    }
+
+    @Test
+    public void detectCharset_utf16ByteOrderMarks() throws IOException {
+        assertEquals(StandardCharsets.UTF_16LE, StatementImporter.detectCharset(
+                new BufferedInputStream(new ByteArrayInputStream(new byte[]{(byte) 0xFF, (byte) 0xFE, 'D', 0}))));
+        assertEquals(StandardCharsets.UTF_16BE, StatementImporter.detectCharset(
+                new BufferedInputStream(new ByteArrayInputStream(new byte[]{(byte) 0xFE, (byte) 0xFF, 0, 'D'}))));
+    }
+
+    @Test
+    public void detectCharset_validUtf8WithoutMark() throws IOException {
+        byte[] data = "תאריך,סכום\n".getBytes(StandardCharsets.UTF_8);
+        BufferedInputStream input = new BufferedInputStream(new ByteArrayInputStream(data));
+
+        assertEquals(StandardCharsets.UTF_8, StatementImporter.detectCharset(input));
+        assertEquals(data[0] & 0xFF, input.read());
+    }
+
+    @Test
+    public void detectCharset_hebrewCodePageFallsBack() throws IOException {
+        byte[] data = "תאריך,סכום\n".getBytes(StatementImporter.FALLBACK_CHARSET);
+
+        assertEquals(StatementImporter.FALLBACK_CHARSET, StatementImporter.detectCharset(
+                new BufferedInputStream(new ByteArrayInputStream(data))));
+    }
+}
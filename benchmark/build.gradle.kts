@@ -0,0 +1,24 @@
+// JMH benchmarks for the ledger hot paths, run on a plain JVM:
+//   ./gradlew :benchmark:jmh
+// Results are written as JSON to build/results/jmh/results.json so runs can be compared
+// between changes. Narrow a run with -Pjmh.includes=<regex>.
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    jmh(project(":core"))
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    findProperty("jmh.includes")?.let { includes.set(listOf(it.toString())) }
+}
@@ -0,0 +1,77 @@
+package com.example.transactiontracker.benchmark;
+
+import com.example.transactiontracker.CategoryTotal;
+import com.example.transactiontracker.MonthSnapshot;
+import com.example.transactiontracker.Transaction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Income, expense and per-category totals over one month's rows: the columnar snapshot, as
+// month loads and the category breakdown use it, against a loop over Transaction objects, as
+// getIncomeForMonth and friends used to do
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregationBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private MonthSnapshot snapshot;
+    private List<Transaction> transactions;
+
+    @Setup
+    public void setUp() {
+        snapshot = LedgerData.snapshot(size, 42);
+        transactions = LedgerData.transactions(size, 42);
+    }
+
+    @Benchmark
+    public void snapshotTotals(Blackhole blackhole) {
+        blackhole.consume(snapshot.getIncome());
+        blackhole.consume(snapshot.getExpenses());
+        blackhole.consume(snapshot.getNet());
+    }
+
+    @Benchmark
+    public long[] snapshotByCategory() {
+        return snapshot.getNetByCategory();
+    }
+
+    @Benchmark
+    public List<CategoryTotal> snapshotCategoryTotals() {
+        return snapshot.getCategoryTotals();
+    }
+
+    @Benchmark
+    public void objectTotals(Blackhole blackhole) {
+        long income = 0;
+        long expenses = 0;
+        for (Transaction transaction : transactions) {
+            if (transaction.getAmount() > 0) {
+                income += transaction.getAmount();
+            } else {
+                expenses += transaction.getAmount();
+            }
+        }
+        blackhole.consume(income);
+        blackhole.consume(expenses);
+        blackhole.consume(income + expenses);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.transactiontracker.benchmark;
+
+import com.example.transactiontracker.Transaction;
+import com.example.transactiontracker.TransactionDisplayModel;
+import com.example.transactiontracker.TransactionFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Building list rows: date, currency amount, color and image indicator for every transaction
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormattingBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private List<Transaction> transactions;
+    private TransactionFormatter formatter;
+
+    @Setup
+    public void setUp() {
+        transactions = LedgerData.transactions(size, 42);
+        formatter = new TransactionFormatter();
+    }
+
+    @Benchmark
+    public List<TransactionDisplayModel> formatAll() {
+        return formatter.formatAll(transactions);
+    }
+}
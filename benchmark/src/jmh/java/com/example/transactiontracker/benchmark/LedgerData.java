@@ -0,0 +1,75 @@
+package com.example.transactiontracker.benchmark;
+
+import com.example.transactiontracker.MonthRange;
+import com.example.transactiontracker.MonthSnapshot;
+import com.example.transactiontracker.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// Deterministic synthetic ledgers: a fixed seed, five years of dates, a dozen categories and
+// roughly one income row for every four expenses
+final class LedgerData {
+    static final String[] CATEGORIES = {null, "Food", "Rent", "Transport", "Salary", "Utilities",
+            "Health", "Shopping", "Entertainment", "Education", "Gifts", "Travel", "Other"};
+    static final MonthRange FIRST_MONTH = MonthRange.of(2021, 0);
+    static final MonthRange LAST_MONTH = MonthRange.of(2025, 11);
+
+    private LedgerData() {
+    }
+
+    static long[] dates(int count, long seed) {
+        Random random = new Random(seed);
+        long span = LAST_MONTH.getEnd() - FIRST_MONTH.getStart();
+        long[] dates = new long[count];
+        for (int i = 0; i < count; i++) {
+            dates[i] = FIRST_MONTH.getStart() + (long) (random.nextDouble() * span);
+        }
+        return dates;
+    }
+
+    static long amount(Random random) {
+        long amount = 100 + random.nextInt(50_000); // 1 to 500 shekels, in agorot
+        return random.nextInt(5) == 0 ? amount * 10 : -amount;
+    }
+
+    static List<Transaction> transactions(int count, long seed) {
+        Random random = new Random(seed);
+        long[] dates = dates(count, seed);
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Transaction transaction = new Transaction(amount(random), "Transaction " + i,
+                    CATEGORIES[1 + random.nextInt(CATEGORIES.length - 1)]);
+            transaction.setId(i + 1);
+            transaction.setDateMillis(dates[i]);
+            if (random.nextInt(10) == 0) {
+                transaction.addImagePath("/data/receipts/" + i + ".jpg");
+            }
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    // A single month holding count rows, as DatabaseHelper.getMonthSnapshot would build it
+    static MonthSnapshot snapshot(int count, long seed) {
+        Random random = new Random(seed);
+        MonthRange range = LAST_MONTH;
+        long[] ids = new long[count];
+        long[] dates = new long[count];
+        long[] amounts = new long[count];
+        int[] categoryIds = new int[count];
+        String[] descriptions = new String[count];
+        long span = range.getEnd() - range.getStart();
+        for (int i = 0; i < count; i++) {
+            ids[i] = i + 1;
+            dates[i] = range.getEnd() - 1 - (span * i) / count; // Newest first
+            amounts[i] = amount(random);
+            categoryIds[i] = random.nextInt(CATEGORIES.length);
+            descriptions[i] = "Transaction " + i;
+        }
+        return new MonthSnapshot(range, count, ids, dates, amounts, categoryIds, descriptions,
+                CATEGORIES, id -> Collections.emptyList());
+    }
+}
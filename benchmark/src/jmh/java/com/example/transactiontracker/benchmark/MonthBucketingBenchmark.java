@@ -0,0 +1,78 @@
+package com.example.transactiontracker.benchmark;
+
+import com.example.transactiontracker.MonthRange;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// Month label parsing and assigning rows to calendar months, the work behind
+// getTransactionsByMonth and the monthly summary keys
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonthBucketingBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private long[] dates;
+    private SimpleDateFormat monthFormat;
+    private Calendar calendar;
+
+    @Setup
+    public void setUp() {
+        dates = LedgerData.dates(size, 42);
+        monthFormat = new SimpleDateFormat("MMM yyyy", Locale.US);
+        calendar = Calendar.getInstance();
+    }
+
+    // Parses the month label once, then selects that month's rows
+    @Benchmark
+    public int filterByMonthLabel() {
+        MonthRange range = MonthRange.parse("Mar 2024", monthFormat);
+        int count = 0;
+        for (long date : dates) {
+            if (range.contains(date)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // A MonthRange per row, which allocates a Calendar each time
+    @Benchmark
+    public long bucketWithMonthRange() {
+        long sum = 0;
+        for (long date : dates) {
+            sum += MonthRange.containing(date).getYearMonth();
+        }
+        return sum;
+    }
+
+    // One reused Calendar for every row
+    @Benchmark
+    public long bucketWithSharedCalendar() {
+        long sum = 0;
+        for (long date : dates) {
+            calendar.setTimeInMillis(date);
+            sum += calendar.get(Calendar.YEAR) * 100 + calendar.get(Calendar.MONTH) + 1;
+        }
+        return sum;
+    }
+}
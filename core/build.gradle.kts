@@ -0,0 +1,14 @@
+// Ledger model and formatting code with no Android dependencies, shared by the app and
+// the JVM benchmarks
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,49 @@
+package com.example.transactiontracker;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// In-memory copy of the categories table. Ids are small and dense, so names are looked up by
+// array index and every row of a category shares one String instance. Id 0 means no category.
+public class CategoryDictionary {
+    private final Map<String, Integer> idsByName = new HashMap<>();
+    private String[] namesById = new String[16];
+    private boolean loaded;
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    public synchronized void setLoaded() {
+        loaded = true;
+    }
+
+    public synchronized String getName(int id) {
+        return id > 0 && id < namesById.length ? namesById[id] : null;
+    }
+
+    public synchronized Integer getId(String name) {
+        return idsByName.get(name);
+    }
+
+    public synchronized void put(int id, String name) {
+        if (id >= namesById.length) {
+            namesById = Arrays.copyOf(namesById, Math.max(id + 1, namesById.length * 2));
+        }
+        namesById[id] = name;
+        idsByName.put(name, id);
+    }
+
+    // Names indexed by id, for callers that resolve many ids at once
+    public synchronized String[] getNames() {
+        return Arrays.copyOf(namesById, namesById.length);
+    }
+
+    // Forgets everything, e.g. after a rolled back insert; the next lookup reloads the table
+    public synchronized void clear() {
+        idsByName.clear();
+        Arrays.fill(namesById, null);
+        loaded = false;
+    }
+}
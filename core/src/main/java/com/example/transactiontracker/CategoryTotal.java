@@ -0,0 +1,44 @@
+package com.example.transactiontracker;
+
+// One category's totals over a period. Amounts are in minor units (agorot).
+public class CategoryTotal {
+    private final int categoryId;
+    private final String category;
+    private final long income;
+    private final long expenses;
+    private final int count;
+
+    public CategoryTotal(int categoryId, String category, long income, long expenses, int count) {
+        this.categoryId = categoryId;
+        this.category = category;
+        this.income = income;
+        this.expenses = expenses;
+        this.count = count;
+    }
+
+    public int getCategoryId() {
+        return categoryId;
+    }
+
+    // Null for transactions without a category
+    public String getCategory() {
+        return category;
+    }
+
+    public long getIncome() {
+        return income;
+    }
+
+    // Expenses are negative, matching the sign of the stored amounts
+    public long getExpenses() {
+        return expenses;
+    }
+
+    public long getNet() {
+        return income + expenses;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
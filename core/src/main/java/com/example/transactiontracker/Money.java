@@ -0,0 +1,30 @@
+package com.example.transactiontracker;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Amounts are stored as long minor units (agorot, 1/100 of a shekel) so sums are exact.
+// Conversions to and from decimal text go through BigDecimal, never through double arithmetic.
+public final class Money {
+    public static final int MINOR_UNITS = 100;
+
+    private Money() {
+    }
+
+    // Parses a decimal string such as "12.5" or "-1234.56" into minor units, rounding half up
+    public static long parse(String value) {
+        return new BigDecimal(value.trim()).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    // For display formatting only; never sum the result
+    public static double toMajor(long minor) {
+        return minor / (double) MINOR_UNITS;
+    }
+
+    // Plain decimal text such as "-12.50", without grouping or currency symbols
+    public static String toPlainString(long minor) {
+        long abs = Math.abs(minor);
+        long fraction = abs % MINOR_UNITS;
+        return (minor < 0 ? "-" : "") + (abs / MINOR_UNITS) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+}
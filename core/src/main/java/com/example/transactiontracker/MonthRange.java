@@ -0,0 +1,78 @@
+package com.example.transactiontracker;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.Calendar;
+
+public class MonthRange {
+    private final int year;
+    private final int month; // 0-based, same as Calendar.MONTH
+    private final long start;
+    private final long end;
+
+    private MonthRange(int year, int month, long start, long end) {
+        this.year = year;
+        this.month = month;
+        this.start = start;
+        this.end = end;
+    }
+
+    public static MonthRange of(Calendar calendar) {
+        return of(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH));
+    }
+
+    public static MonthRange of(int year, int month) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, 1);
+        long start = calendar.getTimeInMillis();
+        calendar.add(Calendar.MONTH, 1);
+        long end = calendar.getTimeInMillis();
+        return new MonthRange(year, month, start, end);
+    }
+
+    public static MonthRange containing(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        return of(calendar);
+    }
+
+    // Parses a month label such as "Dec 2025" with the given format, or returns null if the
+    // label doesn't match it; callers decide whether that's worth reporting
+    public static MonthRange parse(String month, DateFormat format) {
+        try {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTime(format.parse(month));
+            return of(calendar);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getMonth() {
+        return month;
+    }
+
+    // Inclusive start of the month in epoch millis
+    public long getStart() {
+        return start;
+    }
+
+    // Exclusive end of the month in epoch millis
+    public long getEnd() {
+        return end;
+    }
+
+    // Month key in yyyyMM form, e.g. 202512 for December 2025
+    public int getYearMonth() {
+        return year * 100 + month + 1;
+    }
+
+    public boolean contains(long millis) {
+        return millis >= start && millis < end;
+    }
+}
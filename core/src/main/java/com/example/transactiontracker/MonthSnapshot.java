@@ -0,0 +1,156 @@
+package com.example.transactiontracker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Column-oriented, read-only view of one month: parallel primitive arrays instead of one
+// Transaction object per row. Categories are interned into a small dictionary and referenced
+// by id. Image lists are only loaded for rows that ask for them.
+public class MonthSnapshot {
+    public interface ImageLoader {
+        List<String> load(long transactionId);
+    }
+
+    private final MonthRange range;
+    private final int size;
+    private final long[] ids;
+    private final long[] dates;
+    private final long[] amounts;
+    private final int[] categoryIds;
+    private final String[] descriptions;
+    private final String[] categories;
+    private final ImageLoader imageLoader;
+    private List<String>[] imagePaths;
+
+    public MonthSnapshot(MonthRange range, int size, long[] ids, long[] dates, long[] amounts,
+                         int[] categoryIds, String[] descriptions, String[] categories,
+                         ImageLoader imageLoader) {
+        this.range = range;
+        this.size = size;
+        this.ids = ids;
+        this.dates = dates;
+        this.amounts = amounts;
+        this.categoryIds = categoryIds;
+        this.descriptions = descriptions;
+        this.categories = categories;
+        this.imageLoader = imageLoader;
+    }
+
+    public MonthRange getRange() {
+        return range;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getId(int index) {
+        return ids[index];
+    }
+
+    public long getDate(int index) {
+        return dates[index];
+    }
+
+    // Minor units (agorot)
+    public long getAmount(int index) {
+        return amounts[index];
+    }
+
+    public int getCategoryId(int index) {
+        return categoryIds[index];
+    }
+
+    public String getCategory(int index) {
+        return categories[categoryIds[index]];
+    }
+
+    public String getDescription(int index) {
+        return descriptions[index];
+    }
+
+    // The category dictionary; category ids index into this array
+    public String[] getCategories() {
+        return categories;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<String> getImagePaths(int index) {
+        if (imagePaths == null) {
+            imagePaths = (List<String>[]) new List[size];
+        }
+        if (imagePaths[index] == null) {
+            imagePaths[index] = imageLoader.load(ids[index]);
+        }
+        return imagePaths[index];
+    }
+
+    public long getIncome() {
+        long income = 0;
+        for (int i = 0; i < size; i++) {
+            if (amounts[i] > 0) {
+                income += amounts[i];
+            }
+        }
+        return income;
+    }
+
+    public long getExpenses() {
+        long expenses = 0;
+        for (int i = 0; i < size; i++) {
+            if (amounts[i] < 0) {
+                expenses += amounts[i];
+            }
+        }
+        return expenses;
+    }
+
+    public long getNet() {
+        long net = 0;
+        for (int i = 0; i < size; i++) {
+            net += amounts[i];
+        }
+        return net;
+    }
+
+    // Net amount per category, indexed by category id
+    public long[] getNetByCategory() {
+        long[] totals = new long[categories.length];
+        for (int i = 0; i < size; i++) {
+            totals[categoryIds[i]] += amounts[i];
+        }
+        return totals;
+    }
+
+    // Income, expenses and row count per category that has rows, largest spend first
+    public List<CategoryTotal> getCategoryTotals() {
+        long[] income = new long[categories.length];
+        long[] expenses = new long[categories.length];
+        int[] counts = new int[categories.length];
+        for (int i = 0; i < size; i++) {
+            int categoryId = categoryIds[i];
+            if (amounts[i] > 0) {
+                income[categoryId] += amounts[i];
+            } else {
+                expenses[categoryId] += amounts[i];
+            }
+            counts[categoryId]++;
+        }
+
+        List<CategoryTotal> totals = new ArrayList<>();
+        for (int categoryId = 0; categoryId < categories.length; categoryId++) {
+            if (counts[categoryId] > 0) {
+                totals.add(new CategoryTotal(categoryId, categories[categoryId], income[categoryId],
+                        expenses[categoryId], counts[categoryId]));
+            }
+        }
+        totals.sort((a, b) -> a.getExpenses() != b.getExpenses()
+                ? Long.compare(a.getExpenses(), b.getExpenses())
+                : Long.compare(b.getIncome(), a.getIncome()));
+        return totals;
+    }
+
+    public MonthSummary toSummary() {
+        return new MonthSummary(getIncome(), getExpenses(), size);
+    }
+}
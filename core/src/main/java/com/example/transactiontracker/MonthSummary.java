@@ -0,0 +1,31 @@
+package com.example.transactiontracker;
+
+// Amounts are in minor units (agorot)
+public class MonthSummary {
+    private final long income;
+    private final long expenses;
+    private final int count;
+
+    public MonthSummary(long income, long expenses, int count) {
+        this.income = income;
+        this.expenses = expenses;
+        this.count = count;
+    }
+
+    public long getIncome() {
+        return income;
+    }
+
+    // Expenses are negative, matching the sign of the stored amounts
+    public long getExpenses() {
+        return expenses;
+    }
+
+    public long getNet() {
+        return income + expenses;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
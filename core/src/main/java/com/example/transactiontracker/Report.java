@@ -0,0 +1,66 @@
+package com.example.transactiontracker;
+
+// Income and expenses per time bucket over a date range, as parallel arrays ready to chart.
+// Row i covers the bucket starting at getBucketStarts()[i]; buckets without transactions have
+// a single row of zeros. A report split by category has one row per category in each bucket,
+// ordered by category id. Amounts are in minor units (agorot).
+public class Report {
+    private final ReportGranularity granularity;
+    private final long[] bucketStarts;
+    private final int[] categoryIds;
+    private final String[] categories;
+    private final long[] income;
+    private final long[] expenses;
+    private final int[] counts;
+
+    public Report(ReportGranularity granularity, long[] bucketStarts, int[] categoryIds, String[] categories,
+                  long[] income, long[] expenses, int[] counts) {
+        this.granularity = granularity;
+        this.bucketStarts = bucketStarts;
+        this.categoryIds = categoryIds;
+        this.categories = categories;
+        this.income = income;
+        this.expenses = expenses;
+        this.counts = counts;
+    }
+
+    public ReportGranularity getGranularity() {
+        return granularity;
+    }
+
+    public int size() {
+        return bucketStarts.length;
+    }
+
+    public boolean isByCategory() {
+        return categoryIds != null;
+    }
+
+    // Epoch millis of each row's bucket start in local time
+    public long[] getBucketStarts() {
+        return bucketStarts;
+    }
+
+    // Null unless the report is split by category; 0 for transactions without a category
+    public int[] getCategoryIds() {
+        return categoryIds;
+    }
+
+    // Null unless the report is split by category; entries are null for no category
+    public String[] getCategories() {
+        return categories;
+    }
+
+    public long[] getIncome() {
+        return income;
+    }
+
+    // Negative, like the amounts they sum
+    public long[] getExpenses() {
+        return expenses;
+    }
+
+    public int[] getCounts() {
+        return counts;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.transactiontracker;
+
+import java.util.Calendar;
+
+// Bucket sizes for reports. Buckets follow the local calendar, and weeks start on Monday.
+public enum ReportGranularity {
+    DAY, WEEK, MONTH, YEAR;
+
+    // Moves the calendar back to the start of the bucket containing it
+    public void truncate(Calendar calendar) {
+        switch (this) {
+            case YEAR:
+                calendar.set(Calendar.MONTH, Calendar.JANUARY);
+                // fall through
+            case MONTH:
+                calendar.set(Calendar.DAY_OF_MONTH, 1);
+                break;
+            case WEEK:
+                // Days since Monday; Calendar numbers Sunday as 1
+                int daysSinceMonday = (calendar.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+                calendar.add(Calendar.DAY_OF_MONTH, -daysSinceMonday);
+                break;
+            case DAY:
+                break;
+        }
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+    }
+}
@@ -2,23 +2,23 @@ package com.example.transactiontracker;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 public class Transaction implements Serializable {
     private long id;
-    private double amount;
+    private long amount; // Minor units (agorot), negative for expenses
     private String description;
-    private Date date;
-    private List<String> imagePaths;
+    private long date; // Epoch millis
+    private List<String> imagePaths; // Allocated on first add; most rows have no images
     private String category;
 
     public Transaction() {
-        this.date = new Date();
-        this.imagePaths = new ArrayList<>();
+        this.date = System.currentTimeMillis();
     }
 
-    public Transaction(double amount, String description, String category) {
+    public Transaction(long amount, String description, String category) {
         this();
         this.amount = amount;
         this.description = description;
@@ -34,11 +34,11 @@ public class Transaction implements Serializable {
         this.id = id;
     }
 
-    public double getAmount() {
+    public long getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 
@@ -50,16 +50,24 @@ public class Transaction implements Serializable {
         this.description = description;
     }
 
-    public Date getDate() {
+    public long getDateMillis() {
         return date;
     }
 
-    public void setDate(Date date) {
+    public void setDateMillis(long date) {
         this.date = date;
     }
 
+    public Date getDate() {
+        return new Date(date);
+    }
+
+    public void setDate(Date date) {
+        this.date = date.getTime();
+    }
+
     public List<String> getImagePaths() {
-        return imagePaths;
+        return imagePaths != null ? imagePaths : Collections.emptyList();
     }
 
     public void setImagePaths(List<String> imagePaths) {
@@ -67,6 +75,9 @@ public class Transaction implements Serializable {
     }
 
     public void addImagePath(String path) {
+        if (imagePaths == null) {
+            imagePaths = new ArrayList<>(1);
+        }
         this.imagePaths.add(path);
     }
 
@@ -81,4 +92,4 @@ public class Transaction implements Serializable {
     public boolean isExpense() {
         return amount < 0;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,73 @@
+package com.example.transactiontracker;
+
+// A transaction with its list row text and colors already formatted, so binding a row only
+// assigns these values
+public class TransactionDisplayModel {
+    private final Transaction transaction;
+    private final String dateText;
+    private final String amountText;
+    private final int amountColor;
+    private final String imageIndicatorText;
+    private final long balance;
+    private final String balanceText;
+
+    public TransactionDisplayModel(Transaction transaction, String dateText, String amountText,
+                                   int amountColor, String imageIndicatorText, long balance, String balanceText) {
+        this.transaction = transaction;
+        this.dateText = dateText;
+        this.amountText = amountText;
+        this.amountColor = amountColor;
+        this.imageIndicatorText = imageIndicatorText;
+        this.balance = balance;
+        this.balanceText = balanceText;
+    }
+
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    public long getId() {
+        return transaction.getId();
+    }
+
+    public String getDescription() {
+        return transaction.getDescription();
+    }
+
+    public String getCategory() {
+        return transaction.getCategory();
+    }
+
+    public String getDateText() {
+        return dateText;
+    }
+
+    public String getAmountText() {
+        return amountText;
+    }
+
+    public int getAmountColor() {
+        return amountColor;
+    }
+
+    // Null when the transaction has no images
+    public String getImageIndicatorText() {
+        return imageIndicatorText;
+    }
+
+    // The ledger balance just after this transaction, in minor units. Only meaningful when
+    // getBalanceText() isn't null.
+    public long getBalance() {
+        return balance;
+    }
+
+    // Null when the row was formatted without a running balance, e.g. in search results
+    public String getBalanceText() {
+        return balanceText;
+    }
+
+    // Null when the transaction has no images
+    public String getThumbnailPath() {
+        return transaction.getImagePaths().isEmpty() ? null : transaction.getImagePaths().get(0);
+    }
+}
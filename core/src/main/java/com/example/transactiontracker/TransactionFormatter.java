@@ -0,0 +1,63 @@
+package com.example.transactiontracker;
+
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+// Builds display models for the transaction list. The formats aren't thread-safe, so each
+// instance must only be used from one thread; the repository uses it on its database thread
+// right after a page is loaded.
+public class TransactionFormatter {
+    private static final int COLOR_EXPENSE = 0xFFF44336; // Red
+    private static final int COLOR_INCOME = 0xFF4CAF50; // Green
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy HH:mm", Locale.getDefault());
+    private final NumberFormat currencyFormat;
+    private final Date date = new Date();
+
+    public TransactionFormatter() {
+        currencyFormat = NumberFormat.getCurrencyInstance(new Locale("he", "IL"));
+        currencyFormat.setCurrency(Currency.getInstance("ILS"));
+    }
+
+    public TransactionDisplayModel format(Transaction transaction) {
+        return format(transaction, 0, null);
+    }
+
+    private TransactionDisplayModel format(Transaction transaction, long balance, String balanceText) {
+        date.setTime(transaction.getDateMillis());
+        int imageCount = transaction.getImagePaths().size();
+
+        return new TransactionDisplayModel(transaction,
+                dateFormat.format(date),
+                currencyFormat.format(Money.toMajor(Math.abs(transaction.getAmount()))),
+                transaction.isExpense() ? COLOR_EXPENSE : COLOR_INCOME,
+                imageCount > 0 ? "📷 " + imageCount : null,
+                balance, balanceText);
+    }
+
+    public List<TransactionDisplayModel> formatAll(List<Transaction> transactions) {
+        List<TransactionDisplayModel> models = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            models.add(format(transaction));
+        }
+        return models;
+    }
+
+    // Formats a run of consecutive transactions, newest first, with the balance after each one.
+    // newestBalance is the balance after the first; each older row's follows by subtracting the
+    // amount of the row above it.
+    public List<TransactionDisplayModel> formatWithBalances(List<Transaction> transactions, long newestBalance) {
+        List<TransactionDisplayModel> models = new ArrayList<>(transactions.size());
+        long balance = newestBalance;
+        for (Transaction transaction : transactions) {
+            models.add(format(transaction, balance, currencyFormat.format(Money.toMajor(balance))));
+            balance -= transaction.getAmount();
+        }
+        return models;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.transactiontracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MoneyTest {
+    @Test
+    public void parse_decimalText() {
+        assertEquals(1250, Money.parse("12.5"));
+        assertEquals(-123456, Money.parse("-1234.56"));
+        assertEquals(700, Money.parse(" 7 "));
+        assertEquals(0, Money.parse("0.00"));
+    }
+
+    @Test
+    public void parse_roundsHalfUp() {
+        assertEquals(1235, Money.parse("12.345"));
+        assertEquals(1234, Money.parse("12.3449"));
+        assertEquals(-1235, Money.parse("-12.345"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parse_rejectsNonNumbers() {
+        Money.parse("12,50");
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void parse_rejectsOverflow() {
+        Money.parse("100000000000000000000");
+    }
+
+    @Test
+    public void toPlainString_alwaysTwoDecimals() {
+        assertEquals("12.50", Money.toPlainString(1250));
+        assertEquals("-0.05", Money.toPlainString(-5));
+        assertEquals("0.00", Money.toPlainString(0));
+        assertEquals(1250, Money.parse(Money.toPlainString(1250)));
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.transactiontracker;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MonthRangeTest {
+    @Test
+    public void of_coversTheWholeMonth() {
+        MonthRange range = MonthRange.of(2025, Calendar.DECEMBER);
+
+        assertEquals(at(2025, Calendar.DECEMBER, 1), range.getStart());
+        assertEquals(at(2026, Calendar.JANUARY, 1), range.getEnd());
+        assertEquals(202512, range.getYearMonth());
+        assertTrue(range.contains(range.getStart()));
+        assertTrue(range.contains(range.getEnd() - 1));
+        assertFalse(range.contains(range.getEnd()));
+    }
+
+    @Test
+    public void containing_findsTheMonthOfAnInstant() {
+        MonthRange range = MonthRange.containing(at(2024, Calendar.FEBRUARY, 29) + 12 * 60 * 60 * 1000L);
+
+        assertEquals(2024, range.getYear());
+        assertEquals(Calendar.FEBRUARY, range.getMonth());
+        assertEquals(202402, range.getYearMonth());
+    }
+
+    @Test
+    public void parse_monthLabel() {
+        MonthRange range = MonthRange.parse("Dec 2025", new SimpleDateFormat("MMM yyyy", Locale.US));
+
+        assertNotNull(range);
+        assertEquals(202512, range.getYearMonth());
+    }
+
+    @Test
+    public void parse_unreadableLabel() {
+        assertNull(MonthRange.parse("not a month", new SimpleDateFormat("MMM yyyy", Locale.US)));
+    }
+
+    private static long at(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day);
+        return calendar.getTimeInMillis();
+    }
+}
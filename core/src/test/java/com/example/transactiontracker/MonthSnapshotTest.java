@@ -0,0 +1,50 @@
+package com.example.transactiontracker;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MonthSnapshotTest {
+    private static final String[] CATEGORIES = {null, "Food", "Salary", "Transport"};
+
+    private static MonthSnapshot snapshot(long[] amounts, int[] categoryIds) {
+        int size = amounts.length;
+        return new MonthSnapshot(MonthRange.of(2025, 1), size, new long[size], new long[size], amounts,
+                categoryIds, new String[size], CATEGORIES, id -> Collections.emptyList());
+    }
+
+    @Test
+    public void toSummary_sumsTheColumns() {
+        MonthSummary summary = snapshot(new long[]{1000, -250, -50, 300}, new int[]{2, 1, 3, 0}).toSummary();
+
+        assertEquals(1300, summary.getIncome());
+        assertEquals(-300, summary.getExpenses());
+        assertEquals(4, summary.getCount());
+    }
+
+    @Test
+    public void getCategoryTotals_largestSpendFirst() {
+        List<CategoryTotal> totals = snapshot(new long[]{-50, 1000, -250, -100, 200, -20},
+                new int[]{3, 2, 1, 1, 1, 0}).getCategoryTotals();
+
+        assertEquals(4, totals.size());
+        assertEquals("Food", totals.get(0).getCategory());
+        assertEquals(200, totals.get(0).getIncome());
+        assertEquals(-350, totals.get(0).getExpenses());
+        assertEquals(3, totals.get(0).getCount());
+        assertEquals("Transport", totals.get(1).getCategory());
+        assertNull(totals.get(2).getCategory());
+        assertEquals(-20, totals.get(2).getNet());
+        assertEquals("Salary", totals.get(3).getCategory());
+    }
+
+    @Test
+    public void getCategoryTotals_skipsUnusedCategories() {
+        assertEquals(1, snapshot(new long[]{-10}, new int[]{1}).getCategoryTotals().size());
+        assertEquals(0, snapshot(new long[0], new int[0]).getCategoryTotals().size());
+    }
+}
@@ -21,3 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "Transaction Tracker"
 include(":app")
+include(":core")
+include(":benchmark")